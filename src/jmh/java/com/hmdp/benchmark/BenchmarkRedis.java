@@ -0,0 +1,94 @@
+package com.hmdp.benchmark;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * 基准测试用的redis：
+ * 默认从PATH（或环境变量REDIS_SERVER指定的路径）启动一个不落盘的临时redis-server，结束时关闭；
+ * 指定 -Dbench.redis=host:port 时直接连接已有的redis，此时不会清空数据库
+ */
+public final class BenchmarkRedis implements AutoCloseable {
+
+    private final Process process;
+    private final LettuceConnectionFactory connectionFactory;
+    private final StringRedisTemplate template;
+
+    private BenchmarkRedis(Process process, String host, int port) {
+        this.process = process;
+        this.connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new StringRedisTemplate(connectionFactory);
+    }
+
+    public static BenchmarkRedis start() {
+        String external = System.getProperty("bench.redis");
+        if (external != null) {
+            String[] hostPort = external.split(":");
+            return new BenchmarkRedis(null, hostPort[0], Integer.parseInt(hostPort[1]));
+        }
+        String binary = System.getenv().getOrDefault("REDIS_SERVER", "redis-server");
+        try {
+            int port = freePort();
+            Process process = new ProcessBuilder(binary, "--port", String.valueOf(port),
+                    "--save", "", "--appendonly", "no")
+                    .redirectErrorStream(true)
+                    .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "bench-redis-" + port + ".log"))
+                    .start();
+            BenchmarkRedis redis = new BenchmarkRedis(process, "localhost", port);
+            redis.awaitReady();
+            return redis;
+        } catch (IOException e) {
+            throw new IllegalStateException("无法启动 " + binary + "，请安装redis或使用 -Dbench.redis=host:port", e);
+        }
+    }
+
+    public LettuceConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public StringRedisTemplate getTemplate() {
+        return template;
+    }
+
+    private void awaitReady() {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try {
+                template.execute((RedisCallback<String>) connection -> connection.ping(), true);
+                return;
+            } catch (RuntimeException e) {
+                if (System.currentTimeMillis() > deadline || !process.isAlive()) {
+                    close();
+                    throw new IllegalStateException("redis-server启动失败", e);
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(ie);
+                }
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() {
+        connectionFactory.destroy();
+        if (process != null) {
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.RedisRoutingProperties;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.CacheRebuildScheduler;
+import com.hmdp.utils.DistributedLock;
+import com.hmdp.utils.JacksonCacheCodec;
+import com.hmdp.utils.RedisRouter;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 不启动spring容器，按生产配置手工组装CacheClient及其依赖，所有key走同一个redis
+ */
+public final class CacheClientFixture implements AutoCloseable {
+
+    private final BenchmarkRedis redis;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ThreadPoolTaskExecutor rebuildExecutor;
+    private final ClientResources clientResources;
+    private final CacheClient cacheClient;
+
+    public CacheClientFixture(boolean localCache) {
+        this.redis = BenchmarkRedis.start();
+        StringRedisTemplate template = redis.getTemplate();
+
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redis.getConnectionFactory());
+        listenerContainer.afterPropertiesSet();
+
+        // 与application.yaml中hmdp.cache.rebuild的默认值一致
+        rebuildExecutor = new ThreadPoolTaskExecutor();
+        rebuildExecutor.setCorePoolSize(4);
+        rebuildExecutor.setMaxPoolSize(10);
+        rebuildExecutor.setQueueCapacity(1000);
+        rebuildExecutor.setThreadNamePrefix("cache-rebuild-");
+        rebuildExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        rebuildExecutor.initialize();
+
+        // 指标照常记录，开销计入结果
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        clientResources = DefaultClientResources.create();
+        RedisRouter router = new RedisRouter(template, new RedisRoutingProperties(), clientResources);
+        CacheRebuildScheduler scheduler = new CacheRebuildScheduler(rebuildExecutor, router,
+                meterRegistry, Duration.ofSeconds(30), 10000);
+        DistributedLock lock = new DistributedLock(template, listenerContainer, meterRegistry, Duration.ofSeconds(30));
+        cacheClient = new CacheClient(template, router, new JacksonCacheCodec(), scheduler, lock,
+                new CacheMetrics(meterRegistry), listenerContainer, localCache, 10000, Duration.ofSeconds(5));
+        listenerContainer.start();
+    }
+
+    public CacheClient getCacheClient() {
+        return cacheClient;
+    }
+
+    public StringRedisTemplate getTemplate() {
+        return redis.getTemplate();
+    }
+
+    @Override
+    public void close() {
+        rebuildExecutor.shutdown();
+        try {
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            // 关闭阶段忽略
+        }
+        redis.close();
+        clientResources.shutdown();
+    }
+}
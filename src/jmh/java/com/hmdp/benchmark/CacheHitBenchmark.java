@@ -0,0 +1,74 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 命中路径的延迟：所有key都已缓存且未过期，单线程测每次查询的耗时分布。
+ * localCache=true 时测的是Caffeine一级缓存命中，false时每次都要访问redis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheHitBenchmark {
+
+    private static final String KEY_PREFIX = "cache:bench:hit:";
+    private static final String LOCK_KEY_PREFIX = "lock:bench:hit:";
+
+    @Param({"PASS_THROUGH", "MUTEX_LOCK", "LOGICAL_EXPIRE"})
+    public CacheStrategy strategy;
+
+    @Param({"false", "true"})
+    public boolean localCache;
+
+    @Param("1000")
+    public int keys;
+
+    private CacheClientFixture fixture;
+    private InMemoryShopDb db;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new CacheClientFixture(localCache);
+        db = new InMemoryShopDb(keys, 0);
+        // 三种方式未命中时都会回源并写入缓存，查一遍即让key处于"已缓存且未过期"的状态
+        for (long id = 1; id <= keys; id++) {
+            strategy.query(fixture.getCacheClient(), KEY_PREFIX, id, db, LOCK_KEY_PREFIX);
+        }
+        db.drainQueries();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long queries = db.drainQueries();
+        if (queries > 0) {
+            // 命中路径不应该回源
+            System.out.println("unexpected db queries on hit path: " + queries);
+        }
+        fixture.close();
+    }
+
+    @Benchmark
+    public Shop hit() {
+        long id = ThreadLocalRandom.current().nextLong(keys) + 1;
+        return strategy.query(fixture.getCacheClient(), KEY_PREFIX, id, db, LOCK_KEY_PREFIX);
+    }
+}
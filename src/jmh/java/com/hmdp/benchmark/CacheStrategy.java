@@ -0,0 +1,35 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 被比较的三种CacheClient查询方式，TTL与店铺缓存的线上配置一致
+ */
+public enum CacheStrategy {
+
+    PASS_THROUGH {
+        @Override
+        Shop query(CacheClient cacheClient, String keyPrefix, Long id, InMemoryShopDb db, String lockKeyPrefix) {
+            return cacheClient.queryWithPassThrough(keyPrefix, id, Shop.class, db::getById, TTL_MINUTES, TimeUnit.MINUTES);
+        }
+    },
+    MUTEX_LOCK {
+        @Override
+        Shop query(CacheClient cacheClient, String keyPrefix, Long id, InMemoryShopDb db, String lockKeyPrefix) {
+            return cacheClient.queryWithMutexLock(keyPrefix, id, Shop.class, db::getById, TTL_MINUTES, TimeUnit.MINUTES, lockKeyPrefix);
+        }
+    },
+    LOGICAL_EXPIRE {
+        @Override
+        Shop query(CacheClient cacheClient, String keyPrefix, Long id, InMemoryShopDb db, String lockKeyPrefix) {
+            return cacheClient.queryWithLogicalExpire(keyPrefix, id, Shop.class, db::getById, TTL_MINUTES, TimeUnit.MINUTES, lockKeyPrefix);
+        }
+    };
+
+    static final long TTL_MINUTES = 10L;
+
+    abstract Shop query(CacheClient cacheClient, String keyPrefix, Long id, InMemoryShopDb db, String lockKeyPrefix);
+}
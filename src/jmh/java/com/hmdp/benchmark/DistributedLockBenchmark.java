@@ -0,0 +1,73 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.utils.DistributedLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁加锁+解锁的吞吐量。keys=1时所有线程抢同一把锁，测等待和释放通知的开销；
+ * keys较大时基本无竞争，测单次加解锁的往返开销。互斥性由单元测试 testDistributedLock 保证
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class DistributedLockBenchmark {
+
+    private static final String KEY_PREFIX = "lock:bench:";
+
+    @Param({"1", "1024"})
+    public int keys;
+
+    private BenchmarkRedis redis;
+    private RedisMessageListenerContainer listenerContainer;
+    private DistributedLock lock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        redis = BenchmarkRedis.start();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redis.getConnectionFactory());
+        listenerContainer.afterPropertiesSet();
+        lock = new DistributedLock(redis.getTemplate(), listenerContainer, new SimpleMeterRegistry(),
+                Duration.ofSeconds(30));
+        listenerContainer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        listenerContainer.destroy();
+        redis.close();
+    }
+
+    @Benchmark
+    public boolean lockUnlock() throws InterruptedException {
+        String key = KEY_PREFIX + ThreadLocalRandom.current().nextInt(keys);
+        if (!lock.tryLock(key, 10, TimeUnit.SECONDS)) {
+            return false;
+        }
+        lock.unlock(key);
+        return true;
+    }
+}
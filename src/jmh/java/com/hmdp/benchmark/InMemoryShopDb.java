@@ -0,0 +1,82 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 代替数据库的回源：数据放在内存里，每次查询固定停顿latencyMicros模拟一次SQL往返，并统计查询次数
+ */
+public final class InMemoryShopDb {
+
+    private final Map<Long, Shop> shops = new HashMap<>();
+    private final long latencyNanos;
+    private final LongAdder queries = new LongAdder();
+
+    public InMemoryShopDb(int size, long latencyMicros) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        LocalDateTime now = LocalDateTime.now();
+        for (long id = 1; id <= size; id++) {
+            shops.put(id, newShop(id, now));
+        }
+    }
+
+    public Shop getById(Long id) {
+        roundTrip();
+        return shops.get(id);
+    }
+
+    public Map<Long, Shop> listByIds(Collection<Long> ids) {
+        roundTrip();
+        Map<Long, Shop> result = new HashMap<>(ids.size() * 2);
+        for (Long id : ids) {
+            Shop shop = shops.get(id);
+            if (shop != null) {
+                result.put(id, shop);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 读取并清零查询次数
+     */
+    public long drainQueries() {
+        return queries.sumThenReset();
+    }
+
+    private void roundTrip() {
+        queries.increment();
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    /**
+     * 字段长度与tb_shop中的样例数据相近
+     */
+    static Shop newShop(long id, LocalDateTime now) {
+        return new Shop()
+                .setId(id)
+                .setName("103茶餐厅-" + id)
+                .setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg")
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(now)
+                .setUpdateTime(now);
+    }
+}
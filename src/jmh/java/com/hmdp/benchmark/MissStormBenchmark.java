@@ -0,0 +1,138 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存击穿风暴下的吞吐：后台线程每隔stormIntervalMillis让全部热点key同时失效，
+ * 1/16/256个线程随机读取这些key。
+ * PASS_THROUGH、MUTEX_LOCK 的失效是key被删除；LOGICAL_EXPIRE 的失效是key的逻辑过期时间到了。
+ * 每轮结束打印平均每次风暴的回源次数，理想情况下每个key只回源一次
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MissStormBenchmark {
+
+    private static final String LOCK_KEY_PREFIX = "lock:bench:storm:";
+
+    @Param({"PASS_THROUGH", "MUTEX_LOCK", "LOGICAL_EXPIRE"})
+    public CacheStrategy strategy;
+
+    @Param("100")
+    public int hotKeys;
+
+    @Param("1000")
+    public long dbLatencyMicros;
+
+    @Param("200")
+    public long stormIntervalMillis;
+
+    private CacheClientFixture fixture;
+    private InMemoryShopDb db;
+    private ScheduledExecutorService stormer;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong storms = new AtomicLong();
+    /**
+     * 当前这一代的key前缀，换代即所有热点key同时失效
+     */
+    private volatile String keyPrefix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 关闭本地缓存，否则风暴被一级缓存挡住，测不到redis和回源
+        fixture = new CacheClientFixture(false);
+        db = new InMemoryShopDb(hotKeys, dbLatencyMicros);
+        storm();
+        stormer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bench-stormer");
+            t.setDaemon(true);
+            return t;
+        });
+        stormer.scheduleAtFixedRate(this::storm, stormIntervalMillis, stormIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long stormCount = Math.max(storms.getAndSet(0), 1);
+        System.out.printf("%n%s: %.1f db queries per storm (%d hot keys)%n",
+                strategy, (double) db.drainQueries() / stormCount, hotKeys);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stormer.shutdownNow();
+        fixture.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Shop threads1() {
+        return query();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Shop threads16() {
+        return query();
+    }
+
+    @Benchmark
+    @Threads(256)
+    public Shop threads256() {
+        return query();
+    }
+
+    private Shop query() {
+        long id = ThreadLocalRandom.current().nextLong(hotKeys) + 1;
+        return strategy.query(fixture.getCacheClient(), keyPrefix, id, db, LOCK_KEY_PREFIX);
+    }
+
+    private void storm() {
+        String oldPrefix = keyPrefix;
+        String newPrefix = "cache:bench:storm:" + generation.incrementAndGet() + ":";
+        if (strategy == CacheStrategy.LOGICAL_EXPIRE) {
+            // 写入已经逻辑过期的数据，读请求拿到旧值并触发重建
+            Map<String, Shop> expired = new HashMap<>(hotKeys * 2);
+            for (long id = 1; id <= hotKeys; id++) {
+                expired.put(newPrefix + id, InMemoryShopDb.newShop(id, null));
+            }
+            fixture.getCacheClient().setBatchWithLogicalExpire(expired, 0L, TimeUnit.MILLISECONDS);
+        }
+        keyPrefix = newPrefix;
+        storms.incrementAndGet();
+        if (oldPrefix != null) {
+            List<String> oldKeys = new ArrayList<>(hotKeys);
+            for (long id = 1; id <= hotKeys; id++) {
+                oldKeys.add(oldPrefix + id);
+            }
+            fixture.getTemplate().delete(oldKeys);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.JacksonCacheCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值的序列化开销：默认的JacksonCacheCodec与之前使用的hutool JSONUtil对比，
+ * 配合 -prof gc 可以看到每次操作的分配量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private final CacheCodec codec = new JacksonCacheCodec();
+    private Shop shop;
+    private String codecJson;
+    private String hutoolJson;
+
+    @Setup
+    public void setUp() {
+        shop = InMemoryShopDb.newShop(1L, LocalDateTime.now());
+        codecJson = codec.encode(shop);
+        hutoolJson = JSONUtil.toJsonStr(shop);
+    }
+
+    @Benchmark
+    public String codecEncode() {
+        return codec.encode(shop);
+    }
+
+    @Benchmark
+    public Shop codecDecode() {
+        return codec.decode(codecJson, Shop.class);
+    }
+
+    @Benchmark
+    public String hutoolEncode() {
+        return JSONUtil.toJsonStr(shop);
+    }
+
+    @Benchmark
+    public Shop hutoolDecode() {
+        return JSONUtil.toBean(hutoolJson, Shop.class);
+    }
+}
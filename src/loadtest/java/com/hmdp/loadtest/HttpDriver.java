@@ -0,0 +1,109 @@
+package com.hmdp.loadtest;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 最简单的阻塞式HTTP客户端：每个压测线程同步发请求，连接由JDK的keep-alive池复用
+ */
+public final class HttpDriver {
+
+    private final String baseUrl;
+
+    public HttpDriver(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public Response get(String path, Map<String, String> headers) {
+        return send("GET", path, headers, null);
+    }
+
+    public Response post(String path, Map<String, String> headers, String body) {
+        return send("POST", path, headers, body);
+    }
+
+    private Response send(String method, String path, Map<String, String> headers, String body) {
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            conn.setRequestMethod(method);
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(30000);
+            if (headers != null) {
+                headers.forEach(conn::setRequestProperty);
+            }
+            if (body != null) {
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = conn.getResponseCode();
+            // 读完响应体（包括错误响应），连接才能回到keep-alive池
+            InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            return new Response(status, in == null ? "" : readFully(in));
+        } catch (IOException e) {
+            if (conn != null) {
+                conn.disconnect();
+            }
+            return new Response(-1, e.toString());
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = input.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static final class Response {
+        /**
+         * HTTP状态码，-1表示连接或读取失败
+         */
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * 业务是否成功：HTTP 200且Result.success为true
+         */
+        public boolean isSuccess() {
+            return status == 200 && toResult().getBool("success", false);
+        }
+
+        /**
+         * Result.data
+         */
+        public Object getData() {
+            return toResult().get("data");
+        }
+
+        private JSONObject toResult() {
+            return JSONUtil.isJsonObj(body) ? JSONUtil.parseObj(body) : new JSONObject();
+        }
+    }
+}
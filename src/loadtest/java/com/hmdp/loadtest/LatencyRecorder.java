@@ -0,0 +1,63 @@
+package com.hmdp.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个场景的请求统计：延迟直方图（微秒，3位有效数字）、HTTP状态码分布、业务失败数
+ */
+public final class LatencyRecorder {
+
+    private final String name;
+    private final Histogram histogram = new ConcurrentHistogram(3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder businessFailures = new LongAdder();
+    private volatile long beginNanos;
+    private volatile long endNanos;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public void begin() {
+        beginNanos = System.nanoTime();
+    }
+
+    public void end() {
+        endNanos = System.nanoTime();
+    }
+
+    public void record(long startNanos, HttpDriver.Response response) {
+        histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        statuses.computeIfAbsent(response.getStatus(), s -> new LongAdder()).increment();
+        if (response.getStatus() == 200 && !response.isSuccess()) {
+            businessFailures.increment();
+        }
+    }
+
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    public void print() {
+        long count = histogram.getTotalCount();
+        double seconds = Math.max(endNanos - beginNanos, 1) / 1e9;
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, n) -> statusCounts.put(status, n.sum()));
+        System.out.printf("[%s] requests=%d, time=%.2fs, throughput=%.0f req/s%n", name, count, seconds, count / seconds);
+        System.out.printf("[%s] latency(ms) p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", name,
+                percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(99.9),
+                histogram.getMaxValue() / 1000.0);
+        System.out.printf("[%s] status=%s, business failures=%d%n", name, statusCounts, businessFailures.sum());
+    }
+
+    private double percentileMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.hmdp.loadtest;
+
+import com.hmdp.HmDianPingApplication;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 端到端压测入口：启动临时redis和使用H2的整个应用（loadtest profile），依次执行场景，任意场景不通过则退出码为1。
+ * <p>
+ * 参数为 key=value 形式：
+ * <ul>
+ *     <li>scenarios=seckill,shop,login 要执行的场景，按顺序执行</li>
+ *     <li>redis=host:port 使用已有的redis，不指定则从PATH启动redis-server</li>
+ *     <li>各场景自己的参数见对应的类，例如 seckill.users=10000</li>
+ * </ul>
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i > 0) {
+                options.put(arg.substring(0, i), arg.substring(i + 1));
+            }
+        }
+        // JDK默认每个地址只保留5个keep-alive连接，压测线程多时会不断重建连接
+        System.setProperty("http.maxConnections", "1000");
+
+        RedisServerProcess redisServer = null;
+        String redisHost = "localhost";
+        int redisPort;
+        if (options.containsKey("redis")) {
+            String[] hostPort = options.get("redis").split(":");
+            redisHost = hostPort[0];
+            redisPort = Integer.parseInt(hostPort[1]);
+        } else {
+            redisServer = RedisServerProcess.start();
+            redisPort = redisServer.getPort();
+        }
+
+        boolean passed = true;
+        ConfigurableApplicationContext context = null;
+        try {
+            context = new SpringApplicationBuilder(HmDianPingApplication.class)
+                    .profiles("loadtest")
+                    //命令行参数优先级高于application.yaml，properties()只是默认值会被覆盖
+                    .run("--spring.redis.host=" + redisHost, "--spring.redis.port=" + redisPort);
+            awaitReady(context);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpDriver http = new HttpDriver("http://localhost:" + port);
+
+            for (Scenario scenario : scenarios(options.getOrDefault("scenarios", "seckill,shop,login"), context, http, options)) {
+                System.out.printf("%n===== %s =====%n", scenario.name());
+                boolean ok = scenario.run();
+                System.out.printf("===== %s: %s =====%n", scenario.name(), ok ? "PASSED" : "FAILED");
+                passed &= ok;
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (redisServer != null) {
+                redisServer.close();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static List<Scenario> scenarios(String names, ConfigurableApplicationContext context,
+                                            HttpDriver http, Map<String, String> options) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String name : names.split(",")) {
+            switch (name.trim()) {
+                case "seckill":
+                    scenarios.add(new SeckillScenario(context, http, options));
+                    break;
+                case "shop":
+                    scenarios.add(new ShopReadScenario(context, http, options));
+                    break;
+                case "login":
+                    scenarios.add(new LoginStormScenario(context, http, options));
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的场景: " + name);
+            }
+        }
+        return scenarios;
+    }
+
+    /**
+     * 等待缓存预热完成、readiness就绪
+     */
+    private static void awaitReady(ConfigurableApplicationContext context) throws InterruptedException {
+        ApplicationAvailability availability = context.getBean(ApplicationAvailability.class);
+        while (availability.getReadinessState() != ReadinessState.ACCEPTING_TRAFFIC) {
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.hmdp.loadtest;
+
+import cn.hutool.json.JSONObject;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_CODE_KEY;
+
+/**
+ * 登录风暴：users个新用户先各自获取验证码（每人一个X-Forwarded-For，模拟不同ip），再同时登录，
+ * 压测从本机发起请求，本机是受信任的代理（server.tomcat.remoteip.internal-proxies），X-Forwarded-For才会生效。
+ * 登录时自动注册，覆盖建用户、布隆过滤器和签发token。验证码从redis中直接读取。
+ * 拿到验证码的用户登录失败则不通过；获取验证码被全局限流（2000次/分钟）拒绝的只统计不判失败
+ * <p>
+ * 参数：login.users=2000 login.concurrency=200
+ */
+public class LoginStormScenario extends Scenario {
+
+    public LoginStormScenario(ConfigurableApplicationContext context, HttpDriver http, Map<String, String> options) {
+        super(context, http, options);
+    }
+
+    @Override
+    public String name() {
+        return "login";
+    }
+
+    @Override
+    public boolean run() throws InterruptedException {
+        int users = intOption("users", 2000);
+        int concurrency = intOption("concurrency", 200);
+        String[] phones = new String[users];
+        for (int i = 0; i < users; i++) {
+            phones[i] = String.format("139%08d", i);
+        }
+
+        LatencyRecorder codeRecorder = new LatencyRecorder(name() + "-code");
+        List<Runnable> codeTasks = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            String phone = phones[i];
+            String ip = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+            codeTasks.add(() -> {
+                long start = System.nanoTime();
+                codeRecorder.record(start, http.post("/user/code?phone=" + phone,
+                        Collections.singletonMap("X-Forwarded-For", ip), null));
+            });
+        }
+        runAll(codeTasks, concurrency, codeRecorder);
+        codeRecorder.print();
+
+        StringRedisTemplate stringRedisTemplate = context.getBean(StringRedisTemplate.class);
+        LatencyRecorder loginRecorder = new LatencyRecorder(name());
+        LongAdder failures = new LongAdder();
+        List<Runnable> loginTasks = new ArrayList<>(users);
+        for (String phone : phones) {
+            String code = stringRedisTemplate.opsForValue().get(LOGIN_CODE_KEY + phone);
+            if (code == null) {
+                // 验证码被限流，没有发出
+                continue;
+            }
+            String body = new JSONObject().set("phone", phone).set("code", code).toString();
+            loginTasks.add(() -> {
+                long start = System.nanoTime();
+                HttpDriver.Response response = http.post("/user/login", null, body);
+                loginRecorder.record(start, response);
+                if (!response.isSuccess()) {
+                    failures.increment();
+                }
+            });
+        }
+        runAll(loginTasks, concurrency, loginRecorder);
+        loginRecorder.print();
+        System.out.printf("[%s] users=%d, got code=%d, login failures=%d%n",
+                name(), users, loginTasks.size(), failures.sum());
+        return failures.sum() == 0;
+    }
+}
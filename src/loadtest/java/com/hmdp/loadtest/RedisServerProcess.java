@@ -0,0 +1,88 @@
+package com.hmdp.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 压测用的临时redis：从PATH（或环境变量REDIS_SERVER指定的路径）启动不落盘的redis-server，压测结束后关闭
+ */
+public final class RedisServerProcess implements AutoCloseable {
+
+    private final Process process;
+    private final int port;
+
+    private RedisServerProcess(Process process, int port) {
+        this.process = process;
+        this.port = port;
+    }
+
+    public static RedisServerProcess start() {
+        String binary = System.getenv().getOrDefault("REDIS_SERVER", "redis-server");
+        try {
+            int port = freePort();
+            Process process = new ProcessBuilder(binary, "--port", String.valueOf(port),
+                    "--save", "", "--appendonly", "no", "--maxclients", "20000")
+                    .redirectErrorStream(true)
+                    .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "loadtest-redis-" + port + ".log"))
+                    .start();
+            RedisServerProcess redis = new RedisServerProcess(process, port);
+            redis.awaitReady();
+            return redis;
+        } catch (IOException e) {
+            throw new IllegalStateException("无法启动 " + binary + "，请安装redis或通过参数 redis=host:port 指定已有的redis", e);
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    private void awaitReady() {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!ping()) {
+            if (System.currentTimeMillis() > deadline || !process.isAlive()) {
+                close();
+                throw new IllegalStateException("redis-server启动失败，端口: " + port);
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 不依赖客户端库，直接发送inline命令PING
+     */
+    private boolean ping() {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("PING\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] reply = new byte[7];
+            int n = in.read(reply);
+            return n > 0 && new String(reply, 0, n, StandardCharsets.UTF_8).startsWith("+PONG");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+    }
+}
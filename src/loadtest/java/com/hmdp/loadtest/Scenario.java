@@ -0,0 +1,73 @@
+package com.hmdp.loadtest;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测场景：在已启动的应用上执行一段脚本化的请求，打印结果并给出是否通过
+ */
+public abstract class Scenario {
+
+    protected final ConfigurableApplicationContext context;
+    protected final HttpDriver http;
+    protected final Map<String, String> options;
+
+    protected Scenario(ConfigurableApplicationContext context, HttpDriver http, Map<String, String> options) {
+        this.context = context;
+        this.http = http;
+        this.options = options;
+    }
+
+    public abstract String name();
+
+    /**
+     * @return 是否通过，任意场景不通过则压测进程以非0退出码结束
+     */
+    public abstract boolean run() throws InterruptedException;
+
+    protected int intOption(String key, int defaultValue) {
+        String value = options.get(name() + "." + key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    protected double doubleOption(String key, double defaultValue) {
+        String value = options.get(name() + "." + key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * 用concurrency个线程执行完所有任务
+     */
+    protected static void runAll(List<Runnable> tasks, int concurrency, LatencyRecorder recorder) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        recorder.begin();
+        tasks.forEach(executor::execute);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        recorder.end();
+    }
+
+    /**
+     * concurrency个线程闭环地重复执行op，持续seconds秒
+     */
+    protected static void runFor(Runnable op, int seconds, int concurrency, LatencyRecorder recorder) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        recorder.begin();
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    op.run();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        recorder.end();
+    }
+}
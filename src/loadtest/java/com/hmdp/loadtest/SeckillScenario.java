@@ -0,0 +1,159 @@
+package com.hmdp.loadtest;
+
+import cn.hutool.json.JSONObject;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.LoginTokenService;
+import com.hmdp.utils.RedisRouter;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+
+/**
+ * 秒杀：users个用户（每人attempts次）同时抢一张库存为stock的秒杀券。
+ * 订单异步落库完成后核对：超卖数、一人多单数、已返回成功但没有落库的订单数，任意一项不为0则不通过
+ * <p>
+ * 参数：seckill.users=10000 seckill.stock=100 seckill.attempts=2 seckill.concurrency=200
+ */
+public class SeckillScenario extends Scenario {
+
+    /**
+     * 压测用户的id起点，避开已有用户
+     */
+    private static final long USER_ID_BASE = 100_000_000L;
+    /**
+     * 等待订单落库的最长时间
+     */
+    private static final long DRAIN_TIMEOUT_MILLIS = 60_000;
+
+    public SeckillScenario(ConfigurableApplicationContext context, HttpDriver http, Map<String, String> options) {
+        super(context, http, options);
+    }
+
+    @Override
+    public String name() {
+        return "seckill";
+    }
+
+    @Override
+    public boolean run() throws InterruptedException {
+        int users = intOption("users", 10000);
+        int stock = intOption("stock", 100);
+        int attempts = intOption("attempts", 2);
+        int concurrency = intOption("concurrency", 200);
+
+        // 跳过验证码登录，直接签发token，压测只针对下单；创建秒杀券同样需要登录
+        LoginTokenService tokenService = context.getBean(LoginTokenService.class);
+        long voucherId = createVoucher(stock, tokenService.createToken(loadTestUser(USER_ID_BASE - 1, "loadtest_admin")));
+        String[] tokens = new String[users];
+        for (int i = 0; i < users; i++) {
+            tokens[i] = tokenService.createToken(loadTestUser(USER_ID_BASE + i, "loadtest_" + i));
+        }
+
+        LatencyRecorder recorder = new LatencyRecorder(name());
+        AtomicIntegerArray successByUser = new AtomicIntegerArray(users);
+        List<Runnable> tasks = new ArrayList<>(users * attempts);
+        for (int i = 0; i < users; i++) {
+            int user = i;
+            for (int a = 0; a < attempts; a++) {
+                tasks.add(() -> {
+                    long start = System.nanoTime();
+                    HttpDriver.Response response = http.post("/voucher-order/seckill/" + voucherId,
+                            Collections.singletonMap("authorization", tokens[user]), null);
+                    recorder.record(start, response);
+                    if (response.isSuccess()) {
+                        successByUser.incrementAndGet(user);
+                    }
+                });
+            }
+        }
+        // 打乱顺序，同一用户的多次请求互相竞争
+        Collections.shuffle(tasks);
+        runAll(tasks, concurrency, recorder);
+        recorder.print();
+
+        int accepted = 0;
+        int apiDuplicates = 0;
+        for (int i = 0; i < users; i++) {
+            accepted += successByUser.get(i);
+            apiDuplicates += Math.max(successByUser.get(i) - 1, 0);
+        }
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long persisted = awaitOrders(jdbcTemplate, voucherId, accepted);
+        Long dbDuplicates = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(c - 1), 0) FROM (SELECT COUNT(*) c FROM tb_voucher_order WHERE voucher_id = ? " +
+                        "GROUP BY user_id HAVING COUNT(*) > 1) t", Long.class, voucherId);
+        Integer dbStock = jdbcTemplate.queryForObject(
+                "SELECT stock FROM tb_seckill_voucher WHERE voucher_id = ?", Integer.class, voucherId);
+        String redisStock = context.getBean(RedisRouter.class).forKey(SECKILL_ORDER_STREAM)
+                .opsForValue().get(SECKILL_STOCK_KEY + voucherId);
+
+        long oversell = Math.max(Math.max(accepted, persisted) - stock, 0);
+        long duplicates = Math.max(apiDuplicates, dbDuplicates == null ? 0 : dbDuplicates);
+        long lost = Math.max(accepted - persisted, 0);
+        System.out.printf("[%s] stock=%d, accepted=%d, persisted=%d, unsold=%d, db stock=%s, redis stock=%s%n",
+                name(), stock, accepted, persisted, Math.max(Math.min(stock, users) - accepted, 0), dbStock, redisStock);
+        System.out.printf("[%s] oversell=%d, duplicate orders=%d, lost orders=%d%n", name(), oversell, duplicates, lost);
+        return oversell == 0 && duplicates == 0 && lost == 0;
+    }
+
+    private static UserDTO loadTestUser(long id, String nickName) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName(nickName);
+        // 与注册用户一致（icon列默认''），token按session存储时字段不能为null
+        user.setIcon("");
+        return user;
+    }
+
+    private long createVoucher(int stock, String token) {
+        JSONObject voucher = new JSONObject()
+                .set("shopId", 1)
+                .set("title", "压测秒杀券")
+                .set("subTitle", "loadtest")
+                .set("rules", "loadtest")
+                .set("payValue", 8000)
+                .set("actualValue", 10000)
+                .set("type", 1)
+                .set("stock", stock)
+                .set("beginTime", LocalDateTime.now().minusHours(1).toString())
+                .set("endTime", LocalDateTime.now().plusHours(1).toString());
+        HttpDriver.Response response = http.post("/voucher/seckill",
+                Collections.singletonMap("authorization", token), voucher.toString());
+        if (!response.isSuccess()) {
+            throw new IllegalStateException("创建秒杀券失败, status: " + response.getStatus());
+        }
+        return Long.parseLong(response.getData().toString());
+    }
+
+    /**
+     * 等待stream消费者把订单落库：数量达到expected，或者连续10秒没有增长，或者超时
+     */
+    private long awaitOrders(JdbcTemplate jdbcTemplate, long voucherId, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        long last = -1;
+        long lastChange = System.currentTimeMillis();
+        while (true) {
+            Long count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM tb_voucher_order WHERE voucher_id = ?", Long.class, voucherId);
+            long persisted = count == null ? 0 : count;
+            long now = System.currentTimeMillis();
+            if (persisted != last) {
+                last = persisted;
+                lastChange = now;
+            }
+            if (persisted >= expected || now > deadline || now - lastChange > 10_000) {
+                return persisted;
+            }
+            Thread.sleep(200);
+        }
+    }
+}
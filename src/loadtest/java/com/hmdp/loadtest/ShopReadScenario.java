@@ -0,0 +1,73 @@
+package com.hmdp.loadtest;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 店铺详情读：concurrency个线程持续seconds秒请求 /shop/{id}，id服从Zipf分布（少数热点店铺占大部分流量），
+ * 同时覆盖一级缓存、redis和回源路径。出现非200响应则不通过
+ * <p>
+ * 参数：shop.count=10000 shop.zipf=1.0 shop.seconds=30 shop.concurrency=64
+ */
+public class ShopReadScenario extends Scenario {
+
+    public ShopReadScenario(ConfigurableApplicationContext context, HttpDriver http, Map<String, String> options) {
+        super(context, http, options);
+    }
+
+    @Override
+    public String name() {
+        return "shop";
+    }
+
+    @Override
+    public boolean run() throws InterruptedException {
+        // 店铺数据见 db/loadtest-data.sql，共10000家
+        int count = Math.min(intOption("count", 10000), 10000);
+        ZipfSampler sampler = new ZipfSampler(count, doubleOption("zipf", 1.0));
+        LatencyRecorder recorder = new LatencyRecorder(name());
+        LongAdder failures = new LongAdder();
+        runFor(() -> {
+            long start = System.nanoTime();
+            HttpDriver.Response response = http.get("/shop/" + sampler.next(), null);
+            recorder.record(start, response);
+            if (response.getStatus() != 200) {
+                failures.increment();
+            }
+        }, intOption("seconds", 30), intOption("concurrency", 64), recorder);
+        recorder.print();
+        return failures.sum() == 0;
+    }
+
+    /**
+     * 预先计算累计分布，抽样时二分查找：第k热门（k从1开始）的概率正比于 1/k^exponent
+     */
+    static final class ZipfSampler {
+
+        private final double[] cdf;
+
+        ZipfSampler(int n, double exponent) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int k = 1; k <= n; k++) {
+                sum += 1 / Math.pow(k, exponent);
+                cdf[k - 1] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        /**
+         * @return 1..n
+         */
+        long next() {
+            int i = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble());
+            return (i >= 0 ? i : -i - 1) + 1L;
+        }
+    }
+}
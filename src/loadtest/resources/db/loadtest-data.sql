@@ -0,0 +1,20 @@
+-- 压测数据：10种店铺类型，10000家店铺，坐标散布在杭州市区，启动时由预热和布隆过滤器加载
+
+INSERT INTO `tb_shop_type` (`id`, `name`, `icon`, `sort`)
+SELECT "X", CONCAT('类型', "X"), '/types/ms.png', "X" FROM SYSTEM_RANGE(1, 10);
+
+INSERT INTO `tb_shop` (`id`, `name`, `type_id`, `images`, `area`, `address`, `x`, `y`, `avg_price`, `sold`, `comments`, `score`, `open_hours`)
+SELECT "X",
+       CONCAT('压测店铺', "X"),
+       MOD("X", 10) + 1,
+       'https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg',
+       CONCAT('商圈', MOD("X", 50)),
+       CONCAT('压测路', "X", '号'),
+       120.10 + MOD("X" * 7919, 1000) / 10000.0,
+       30.25 + MOD("X" * 104729, 1000) / 10000.0,
+       50 + MOD("X", 100),
+       MOD("X" * 31, 5000),
+       MOD("X" * 17, 3000),
+       30 + MOD("X", 20),
+       '10:00-22:00'
+FROM SYSTEM_RANGE(1, 10000);
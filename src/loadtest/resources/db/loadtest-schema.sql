@@ -0,0 +1,145 @@
+-- 压测用的H2表结构，与 db/hmdp.sql 保持一致，去掉了H2不支持的存储引擎、字符集、注释等选项
+
+CREATE TABLE `tb_blog` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `shop_id` bigint NOT NULL,
+  `user_id` bigint NOT NULL,
+  `title` varchar(255) NOT NULL,
+  `images` varchar(2048) NOT NULL,
+  `content` varchar(2048) NOT NULL,
+  `liked` int DEFAULT 0,
+  `comments` int DEFAULT NULL,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+CREATE INDEX `idx_user_id` ON `tb_blog` (`user_id`, `id`);
+
+CREATE TABLE `tb_blog_comments` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `user_id` bigint NOT NULL,
+  `blog_id` bigint NOT NULL,
+  `parent_id` bigint NOT NULL,
+  `answer_id` bigint NOT NULL,
+  `content` varchar(255) NOT NULL,
+  `liked` int DEFAULT NULL,
+  `status` tinyint DEFAULT NULL,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `tb_follow` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `user_id` bigint NOT NULL,
+  `follow_user_id` bigint NOT NULL,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_follow` (`user_id`, `follow_user_id`)
+);
+
+CREATE TABLE `tb_seckill_voucher` (
+  `voucher_id` bigint NOT NULL,
+  `stock` int NOT NULL,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `begin_time` timestamp NULL,
+  `end_time` timestamp NULL,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`voucher_id`)
+);
+
+CREATE TABLE `tb_shop` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `name` varchar(128) NOT NULL,
+  `type_id` bigint NOT NULL,
+  `images` varchar(1024) NOT NULL,
+  `area` varchar(128) DEFAULT NULL,
+  `address` varchar(255) NOT NULL,
+  `x` double NOT NULL,
+  `y` double NOT NULL,
+  `avg_price` bigint DEFAULT NULL,
+  `sold` int NOT NULL,
+  `comments` int NOT NULL,
+  `score` int NOT NULL,
+  `open_hours` varchar(32) DEFAULT NULL,
+  `create_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+CREATE INDEX `foreign_key_type` ON `tb_shop` (`type_id`, `id`);
+
+CREATE TABLE `tb_shop_type` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `name` varchar(32) DEFAULT NULL,
+  `icon` varchar(255) DEFAULT NULL,
+  `sort` int DEFAULT NULL,
+  `create_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `tb_sign` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `user_id` bigint NOT NULL,
+  `year` int NOT NULL,
+  `month` tinyint NOT NULL,
+  `bitmap` int NOT NULL DEFAULT 0,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_month` (`user_id`, `year`, `month`)
+);
+
+CREATE TABLE `tb_user` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `phone` varchar(11) NOT NULL,
+  `password` varchar(128) DEFAULT '',
+  `nick_name` varchar(32) DEFAULT '',
+  `icon` varchar(255) DEFAULT '',
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uniqe_key_phone` (`phone`)
+);
+
+CREATE TABLE `tb_user_info` (
+  `user_id` bigint NOT NULL,
+  `city` varchar(64) DEFAULT '',
+  `introduce` varchar(128) DEFAULT NULL,
+  `fans` int DEFAULT 0,
+  `followee` int DEFAULT 0,
+  `gender` tinyint DEFAULT 0,
+  `birthday` date DEFAULT NULL,
+  `credits` int DEFAULT 0,
+  `level` tinyint DEFAULT 0,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`user_id`)
+);
+
+CREATE TABLE `tb_voucher` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `shop_id` bigint DEFAULT NULL,
+  `title` varchar(255) NOT NULL,
+  `sub_title` varchar(255) DEFAULT NULL,
+  `rules` varchar(1024) DEFAULT NULL,
+  `pay_value` bigint NOT NULL,
+  `actual_value` bigint NOT NULL,
+  `type` tinyint NOT NULL DEFAULT 0,
+  `status` tinyint NOT NULL DEFAULT 1,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `tb_voucher_order` (
+  `id` bigint NOT NULL,
+  `user_id` bigint NOT NULL,
+  `voucher_id` bigint NOT NULL,
+  `pay_type` tinyint NOT NULL DEFAULT 1,
+  `status` tinyint NOT NULL DEFAULT 1,
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `pay_time` timestamp NULL DEFAULT NULL,
+  `use_time` timestamp NULL DEFAULT NULL,
+  `refund_time` timestamp NULL DEFAULT NULL,
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`)
+);
@@ -0,0 +1,66 @@
+package com.hmdp.config;
+
+import com.hmdp.service.IShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+
+/**
+ * 启动时预热店铺缓存和店铺GEO索引。
+ * ApplicationRunner执行完之前应用不会进入ACCEPTING_TRAFFIC，readiness探针保持未就绪，
+ * 冷节点不会把全部首次访问都压到数据库上（未命中的店铺会加锁查库重建，但延迟高）。
+ * 预热失败按指数退避重试，全部失败则启动失败：附近店铺查询依赖的GEO索引没有按需重建的路径
+ */
+@Slf4j
+@Component
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+    @Resource
+    private IShopService shopService;
+    @Resource
+    private ApplicationContext applicationContext;
+
+    @Value("${hmdp.cache.warm-up.enabled:true}")
+    private boolean enabled;
+    @Value("${hmdp.cache.warm-up.page-size:500}")
+    private int pageSize;
+    @Value("${hmdp.cache.warm-up.max-attempts:5}")
+    private int maxAttempts;
+    @Value("${hmdp.cache.warm-up.retry-delay:1s}")
+    private Duration retryDelay;
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        AvailabilityChangeEvent.publish(applicationContext, ReadinessState.REFUSING_TRAFFIC);
+        long delay = retryDelay.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            long begin = System.currentTimeMillis();
+            try {
+                int count = shopService.warmUpCache(pageSize);
+                log.info("店铺缓存预热完成，共{}条，耗时{}ms", count, System.currentTimeMillis() - begin);
+                //附近店铺查询依赖的GEO索引
+                shopService.loadShopGeo();
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    //抛出后启动失败，节点不会进入就绪状态
+                    throw new IllegalStateException("店铺缓存预热失败，已重试" + attempt + "次", e);
+                }
+                log.warn("店铺缓存预热失败，{}ms后第{}次重试", delay, attempt + 1, e);
+                Thread.sleep(delay);
+                delay *= 2;
+            }
+        }
+    }
+}
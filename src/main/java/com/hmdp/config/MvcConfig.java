@@ -1,10 +1,17 @@
 package com.hmdp.config;
 
 import com.hmdp.utils.LoginIntercepter;
+import com.hmdp.utils.LoginTokenService;
+import com.hmdp.utils.RateLimitIntercepter;
 import com.hmdp.utils.RefreshIntercepter;
+import com.hmdp.utils.TimedIntercepter;
+import com.hmdp.utils.UvIntercepter;
+import com.hmdp.utils.UvRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Configurable;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -15,18 +22,30 @@ public class MvcConfig implements WebMvcConfigurer {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private LoginTokenService loginTokenService;
+    @Resource
+    private UvRecorder uvRecorder;
+    @Resource
+    private MeterRegistry meterRegistry;
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
 
-        registry.addInterceptor(new RefreshIntercepter(stringRedisTemplate))
+        registry.addInterceptor(timed(new RateLimitIntercepter(stringRedisTemplate)));      //限流最先执行，只对声明了@RateLimit的方法生效
+
+        registry.addInterceptor(timed(new RefreshIntercepter(loginTokenService)))
                 .excludePathPatterns(
                         "/user/code",
                         "/shop/**",
+                        "/blog/hot",
                         "/user/login"
                 );      //刷新拦截器在全局生效
 
+        registry.addInterceptor(timed(new RefreshIntercepter(loginTokenService, false)))
+                .addPathPatterns("/shop/**", "/blog/hot");      //店铺和热门博文允许匿名访问，带了有效token时同样解析出登录用户
 
-        registry.addInterceptor(new LoginIntercepter())//登录状态拦截器
+
+        registry.addInterceptor(timed(new LoginIntercepter()))//登录状态拦截器
                 .excludePathPatterns(
                         "/user/code",
                         "/user/login",
@@ -37,5 +56,15 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/voucher/**"
                 );
 
+        registry.addInterceptor(timed(new UvIntercepter(uvRecorder)))//UV统计，在两个刷新拦截器之后以便取到登录用户
+                .addPathPatterns("/shop/*", "/blog/hot");
+
+    }
+
+    /**
+     * 所有拦截器统一记录耗时
+     */
+    private HandlerInterceptor timed(HandlerInterceptor interceptor) {
+        return new TimedIntercepter(interceptor, meterRegistry);
     }
 }
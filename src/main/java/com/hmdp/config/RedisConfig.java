@@ -0,0 +1,46 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.JacksonCacheCodec;
+import com.hmdp.utils.RedisCommandLatencyCollector;
+import io.lettuce.core.event.DefaultEventPublisherOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    /**
+     * lettuce客户端资源（事件循环、命令耗时统计），默认连接和RedisRouter的各节点连接共用
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources lettuceClientResources(MeterRegistry meterRegistry) {
+        return DefaultClientResources.builder()
+                .commandLatencyCollector(new RedisCommandLatencyCollector(meterRegistry))
+                .commandLatencyPublisherOptions(DefaultEventPublisherOptions.disabled())
+                .build();
+    }
+
+    /**
+     * redis发布订阅的监听容器，用于多节点间广播本地缓存失效等消息
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    /**
+     * 缓存值的序列化方式，替换此bean即可切换实现
+     */
+    @Bean
+    public CacheCodec cacheCodec() {
+        return new JacksonCacheCodec();
+    }
+}
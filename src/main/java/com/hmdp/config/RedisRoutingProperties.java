@@ -0,0 +1,49 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * redis分片路由配置：key前缀 -> 逻辑连接池 -> 若干redis节点
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.redis")
+public class RedisRoutingProperties {
+
+    /**
+     * 一致性哈希环上每个节点的虚拟节点数
+     */
+    private int virtualNodes = 160;
+
+    /**
+     * key前缀 -> 连接池名称，按最长前缀匹配，未匹配的key走spring.redis默认连接
+     */
+    private Map<String, String> routes = new LinkedHashMap<>();
+
+    /**
+     * 连接池名称 -> 连接池配置
+     */
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+
+    @Data
+    public static class Pool {
+        /**
+         * 节点列表 host:port，为空时使用spring.redis默认连接
+         */
+        private List<String> nodes = new ArrayList<>();
+        private String password;
+        private int maxActive = 8;
+        private int maxIdle = 8;
+        private int minIdle = 0;
+        private Duration maxWait = Duration.ofMillis(500);
+        private Duration timeout = Duration.ofSeconds(2);
+    }
+}
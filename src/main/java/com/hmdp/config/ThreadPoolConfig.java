@@ -0,0 +1,31 @@
+package com.hmdp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ThreadPoolConfig {
+
+    /**
+     * 逻辑过期缓存的重建线程池：有界队列，队列满时拒绝（读请求继续返回旧值），随容器关闭
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cacheRebuildExecutor(
+            @Value("${hmdp.cache.rebuild.core-size:4}") int coreSize,
+            @Value("${hmdp.cache.rebuild.max-size:10}") int maxSize,
+            @Value("${hmdp.cache.rebuild.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("cache-rebuild-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+}
@@ -4,13 +4,17 @@ package com.hmdp.controller;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.UserInfo;
+import com.hmdp.service.ISignService;
 import com.hmdp.service.IUserInfoService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.RateLimit;
+import com.hmdp.utils.RegexPatterns;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 /**
@@ -32,13 +36,22 @@ public class UserController {
     @Resource
     private IUserInfoService userInfoService;
 
+    @Resource
+    private ISignService signService;
+
     /**
      * 发送手机验证码
      */
     @PostMapping("code")
-    public Result sendCode(@RequestParam("phone") String phone, HttpSession session) {
+    @RateLimit(key = "code:ip", type = RateLimit.Type.IP, algorithm = RateLimit.Algorithm.TOKEN_BUCKET, limit = 10, window = 600)
+    @RateLimit(key = "code:phone", type = RateLimit.Type.PARAM, param = "phone", pattern = RegexPatterns.PHONE_REGEX,
+            limit = 1, window = 60, message = "验证码发送过于频繁，请1分钟后再试")
+    @RateLimit(key = "code:phone:day", type = RateLimit.Type.PARAM, param = "phone", pattern = RegexPatterns.PHONE_REGEX,
+            limit = 10, window = 86400, message = "该手机号今日获取验证码次数已达上限")
+    @RateLimit(key = "code:global", algorithm = RateLimit.Algorithm.TOKEN_BUCKET, limit = 2000, window = 60)
+    public Result sendCode(@RequestParam("phone") String phone) {
         // 发送短信验证码并保存验证码
-        return userService.sendCode(phone, session);
+        return userService.sendCode(phone);
     }
 
     /**
@@ -56,9 +69,8 @@ public class UserController {
      * @return 无
      */
     @PostMapping("/logout")
-    public Result logout(){
-        // TODO 实现登出功能
-        return Result.fail("功能未完成");
+    public Result logout(HttpServletRequest request){
+        return userService.logout(request.getHeader("authorization"));
     }
 
     @GetMapping("/me")
@@ -67,8 +79,22 @@ public class UserController {
         return Result.ok(UserHolder.getUser());
     }
 
+    @PostMapping("/sign")
+    public Result sign(){
+        return signService.sign();
+    }
+
+    @GetMapping("/sign/count")
+    public Result signCount(){
+        return signService.signCount();
+    }
+
     @GetMapping("/info/{id}")
     public Result info(@PathVariable("id") Long userId){
+        // 布隆过滤器拦截不存在的用户id
+        if (!userService.mightExist(userId)) {
+            return Result.fail("用户不存在");
+        }
         // 查询详情
         UserInfo info = userInfoService.getById(userId);
         if (info == null) {
@@ -0,0 +1,52 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.UvRecorder;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * <p>
+ * UV统计查询
+ * </p>
+ */
+@RestController
+@RequestMapping("/uv")
+public class UvController {
+
+    /**
+     * 单次查询最多合并的天数
+     */
+    private static final long MAX_DAYS = 90;
+
+    @Resource
+    private UvRecorder uvRecorder;
+
+    /**
+     * 查询实体在日期范围内的去重访客数
+     * @param entity 实体，如 shop:1、blog:hot
+     * @param begin 开始日期（含）
+     * @param end 结束日期（含），默认与开始日期相同
+     */
+    @GetMapping
+    public Result queryUv(
+            @RequestParam("entity") String entity,
+            @RequestParam("begin") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate begin,
+            @RequestParam(value = "end", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end
+    ) {
+        if (end == null) {
+            end = begin;
+        }
+        if (end.isBefore(begin) || ChronoUnit.DAYS.between(begin, end) >= MAX_DAYS) {
+            return Result.fail("日期范围不合法");
+        }
+        return Result.ok(uvRecorder.count(entity, begin, end));
+    }
+}
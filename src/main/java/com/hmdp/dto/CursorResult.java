@@ -0,0 +1,28 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果，nextCursor为null表示没有下一页
+ */
+@Data
+public class CursorResult {
+    private List<?> list;
+    private String nextCursor;
+
+    /**
+     * 由多查一条的结果组装：rows超过pageSize说明还有下一页，用本页最后一条生成游标
+     */
+    public static <T> CursorResult of(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        CursorResult result = new CursorResult();
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            result.setNextCursor(cursorOf.apply(rows.get(pageSize - 1)));
+        }
+        result.setList(rows);
+        return result;
+    }
+}
@@ -0,0 +1,20 @@
+package com.hmdp.mapper;
+
+import com.hmdp.entity.Sign;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * <p>
+ * 用户月度签到记录 Mapper 接口
+ * </p>
+ */
+public interface SignMapper extends BaseMapper<Sign> {
+
+    /**
+     * 批量写入当月签到位图，已存在则覆盖
+     */
+    int upsertBatch(@Param("signs") List<Sign> signs);
+}
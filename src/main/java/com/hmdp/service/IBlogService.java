@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Blog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,29 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogService extends IService<Blog> {
 
+    Result saveBlog(Blog blog);
+
+    /**
+     * 点赞/取消点赞
+     */
+    Result likeBlog(Long id);
+
+    /**
+     * 热门博文，按热度游标分页
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     */
+    Result queryHotBlog(String cursor);
+
+    /**
+     * 当前用户发布的博文，按id倒序游标分页
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     */
+    Result queryMyBlog(String cursor);
+
+    /**
+     * 关注的人发布的博文，按发布时间滚动分页
+     * @param max 上一页最小时间戳（第一页为当前时间）
+     * @param offset 上一页中与最小时间戳相同的条数
+     */
+    Result queryBlogOfFollow(Long max, Integer offset);
 }
@@ -15,5 +15,35 @@ import com.baomidou.mybatisplus.extension.service.IService;
 public interface IShopService extends IService<Shop> {
 
     Result queryById(Long id);
+    Result saveShop(Shop shop);
     Result update(Shop shop);
+
+    /**
+     * 按类型游标分页查询店铺，传入坐标时按距离排序
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     */
+    Result queryShopByType(Integer typeId, String cursor, Double x, Double y);
+
+    /**
+     * 按名称或商圈关键字搜索店铺，按相关度游标分页
+     * @param cursor 上一页返回的nextCursor，第一页为空
+     */
+    Result queryShopByName(String name, String cursor);
+
+    /**
+     * 店铺名称自动补全
+     */
+    Result suggestShopName(String prefix);
+
+    /**
+     * 把全部店铺坐标按类型写入redis GEO
+     * @return 写入的店铺数量
+     */
+    int loadShopGeo();
+
+    /**
+     * 分页把全部店铺写入逻辑过期缓存
+     * @return 预热的店铺数量
+     */
+    int warmUpCache(int pageSize);
 }
@@ -0,0 +1,23 @@
+package com.hmdp.service;
+
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Sign;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+/**
+ * <p>
+ * 用户签到 服务类
+ * </p>
+ */
+public interface ISignService extends IService<Sign> {
+
+    /**
+     * 当前用户今日签到
+     */
+    Result sign();
+
+    /**
+     * 当前用户截至今天的连续签到天数
+     */
+    Result signCount();
+}
@@ -3,9 +3,12 @@ package com.hmdp.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 
 import javax.servlet.http.HttpSession;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * <p>
@@ -17,7 +20,19 @@ import javax.servlet.http.HttpSession;
  */
 public interface IUserService extends IService<User> {
 
-    Result sendCode(String phone, HttpSession session);
+    Result sendCode(String phone);
 
     Result login(LoginFormDTO loginForm, HttpSession session);
+
+    Result logout(String token);
+
+    /**
+     * 布隆过滤器判断用户是否可能存在
+     */
+    boolean mightExist(Long userId);
+
+    /**
+     * 批量查询用户展示信息，优先读本地缓存，未命中的一次listByIds查出
+     */
+    Map<Long, UserDTO> queryUserDTOs(Collection<Long> userIds);
 }
@@ -1,11 +1,45 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
 import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.PageCursor;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+import static com.hmdp.utils.SystemConstants.BLOOM_FILTER_INIT_BATCH;
+import static com.hmdp.utils.SystemConstants.MAX_PAGE_SIZE;
+
 /**
  * <p>
  *  服务实现类
@@ -14,7 +48,368 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private IUserService userService;
+
+    private static final DefaultRedisScript<Long> LIKE_SCRIPT;
+    static {
+        LIKE_SCRIPT = new DefaultRedisScript<>();
+        LIKE_SCRIPT.setLocation(new ClassPathResource("like.lua"));
+        LIKE_SCRIPT.setResultType(Long.class);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> HOT_PAGE_SCRIPT;
+    static {
+        HOT_PAGE_SCRIPT = new DefaultRedisScript<>();
+        HOT_PAGE_SCRIPT.setLocation(new ClassPathResource("hot_page.lua"));
+        HOT_PAGE_SCRIPT.setResultType(List.class);
+    }
+
+    /**
+     * 每次写回数据库的博文数
+     */
+    private static final int LIKED_FLUSH_BATCH = 500;
+
+    /**
+     * 热门排行不存在时（首次启动或redis数据丢失），用数据库中的点赞数初始化
+     */
+    @PostConstruct
+    private void initHotRank() {
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(BLOG_HOT_KEY))) {
+            return;
+        }
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Blog> blogs = query().select("id", "liked").gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT " + BLOOM_FILTER_INIT_BATCH).list();
+            if (!blogs.isEmpty()) {
+                Set<ZSetOperations.TypedTuple<String>> tuples = blogs.stream()
+                        .map(blog -> new DefaultTypedTuple<>(blog.getId().toString(), blog.getLiked() == null ? 0D : blog.getLiked()))
+                        .collect(Collectors.toSet());
+                stringRedisTemplate.opsForZSet().add(BLOG_HOT_KEY, tuples);
+            }
+            count += blogs.size();
+            if (blogs.size() < BLOOM_FILTER_INIT_BATCH) {
+                break;
+            }
+            lastId = blogs.get(blogs.size() - 1).getId();
+        }
+        log.info("热门博文排行初始化完成，共{}条", count);
+    }
+
+    @Override
+    public Result saveBlog(Blog blog) {
+        // 获取登录用户
+        UserDTO user = UserHolder.getUser();
+        blog.setUserId(user.getId());
+        // 保存探店博文
+        save(blog);
+        // 加入热门排行
+        stringRedisTemplate.opsForZSet().add(BLOG_HOT_KEY, blog.getId().toString(), 0);
+        // 推送给粉丝
+        publishToFans(user.getId(), blog.getId());
+        // 返回id
+        return Result.ok(blog.getId());
+    }
+
+    //================= 关注推送 =================
+    /**
+     * 每批管道推送的粉丝数
+     */
+    private static final int FEED_PUSH_BATCH = 1000;
+
+    /**
+     * 粉丝数达到该值的作者改为拉模式：只写自己的发件箱，由粉丝读取时合并
+     */
+    @Value("${hmdp.feed.push-threshold:5000}")
+    private long feedPushThreshold;
+    /**
+     * 每个收件箱最多保留的博文数
+     */
+    @Value("${hmdp.feed.inbox-max-size:1000}")
+    private long feedInboxMaxSize;
+
+    private void publishToFans(Long authorId, Long blogId) {
+        long now = System.currentTimeMillis();
+        String blog = blogId.toString();
+        Long fansCount = stringRedisTemplate.opsForSet().size(FANS_KEY + authorId);
+        if (fansCount == null || fansCount == 0) {
+            return;
+        }
+        if (fansCount >= feedPushThreshold) {
+            //大V：写发件箱，粉丝读取时拉取
+            String outboxKey = FEED_OUTBOX_KEY + authorId;
+            stringRedisTemplate.opsForZSet().add(outboxKey, blog, now);
+            stringRedisTemplate.opsForZSet().removeRange(outboxKey, 0, -feedInboxMaxSize - 1);
+            stringRedisTemplate.opsForSet().add(FEED_BIG_V_KEY, authorId.toString());
+            return;
+        }
+        //普通作者：管道批量写入每个粉丝的收件箱，并裁剪到最大长度
+        List<String> fans = new ArrayList<>(stringRedisTemplate.opsForSet().members(FANS_KEY + authorId));
+        for (int from = 0; from < fans.size(); from += FEED_PUSH_BATCH) {
+            List<String> batch = fans.subList(from, Math.min(from + FEED_PUSH_BATCH, fans.size()));
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String fanId : batch) {
+                    conn.zAdd(FEED_KEY + fanId, now, blog);
+                    conn.zRemRange(FEED_KEY + fanId, 0, -feedInboxMaxSize - 1);
+                }
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public Result queryBlogOfFollow(Long max, Integer offset) {
+        Long userId = UserHolder.getUser().getId();
+        //读取的来源：自己的收件箱 + 关注的大V的发件箱
+        List<String> sources = new ArrayList<>();
+        sources.add(FEED_KEY + userId);
+        Set<String> bigVs = stringRedisTemplate.opsForSet().intersect(FOLLOWS_KEY + userId, FEED_BIG_V_KEY);
+        if (bigVs != null) {
+            bigVs.forEach(id -> sources.add(FEED_OUTBOX_KEY + id));
+        }
+        //每个来源取 offset + 一页，合并后跳过上一页已返回的同分数条目
+        long count = offset + MAX_PAGE_SIZE;
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String key : sources) {
+                conn.zRevRangeByScoreWithScores(key, 0, max, 0, count);
+            }
+            return null;
+        });
+        List<ZSetOperations.TypedTuple<String>> tuples = new ArrayList<>();
+        for (Object result : results) {
+            if (result instanceof Set) {
+                for (Object tuple : (Set<?>) result) {
+                    tuples.add(toTypedTuple(tuple));
+                }
+            }
+        }
+        //按时间倒序，同一时间按博文id倒序，保证多次请求顺序一致
+        tuples.sort(Comparator.comparing((ZSetOperations.TypedTuple<String> t) -> t.getScore()).reversed()
+                .thenComparing(t -> Long.valueOf(t.getValue()), Comparator.reverseOrder()));
+        List<Long> ids = new ArrayList<>(MAX_PAGE_SIZE);
+        long minTime = 0;
+        int os = 1;
+        int skipped = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            long time = tuple.getScore().longValue();
+            if (time == max && skipped < offset) {
+                skipped++;
+                continue;
+            }
+            if (ids.size() == MAX_PAGE_SIZE) {
+                break;
+            }
+            //每篇博文发布时只会进入收件箱或发件箱之一，不会重复
+            ids.add(Long.valueOf(tuple.getValue()));
+            if (time == minTime) {
+                os++;
+            } else {
+                minTime = time;
+                os = 1;
+            }
+        }
+        if (ids.isEmpty()) {
+            return Result.ok();
+        }
+        //最小时间与上一页相同，offset需要累加
+        if (minTime == max) {
+            os += offset;
+        }
+        //一次查出博文，按时间顺序组装
+        Map<Long, Blog> blogMap = listByIds(ids).stream().collect(Collectors.toMap(Blog::getId, Function.identity()));
+        List<Blog> blogs = ids.stream().map(blogMap::get).filter(Objects::nonNull).collect(Collectors.toList());
+        fillBlogUsers(blogs);
+        fillBlogLiked(blogs);
+
+        ScrollResult r = new ScrollResult();
+        r.setList(blogs);
+        r.setOffset(os);
+        r.setMinTime(minTime);
+        return Result.ok(r);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ZSetOperations.TypedTuple<String> toTypedTuple(Object tuple) {
+        if (tuple instanceof ZSetOperations.TypedTuple) {
+            return (ZSetOperations.TypedTuple<String>) tuple;
+        }
+        //StringRedisConnection返回的是StringTuple
+        StringRedisConnection.StringTuple stringTuple = (StringRedisConnection.StringTuple) tuple;
+        return new DefaultTypedTuple<>(stringTuple.getValueAsString(), stringTuple.getScore());
+    }
+
+    @Override
+    public Result likeBlog(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        //点赞状态、热度在redis中原子切换，数据库的点赞数由定时任务批量写回
+        Long liked = toggleLike(id, userId);
+        if (Long.valueOf(-1L).equals(liked)) {
+            //不在热门排行中：博文不存在，或排行数据丢失后尚未重新初始化，后者按数据库点赞数补回排行
+            Blog blog = query().select("id", "liked").eq("id", id).one();
+            if (blog == null) {
+                return Result.fail("博文不存在");
+            }
+            stringRedisTemplate.opsForZSet().add(BLOG_HOT_KEY, id.toString(), blog.getLiked() == null ? 0 : blog.getLiked());
+            liked = toggleLike(id, userId);
+        }
+        return Result.ok(Long.valueOf(1L).equals(liked));
+    }
+
+    /**
+     * @return 1点赞，0取消点赞，-1博文不在热门排行中
+     */
+    private Long toggleLike(Long id, Long userId) {
+        return stringRedisTemplate.execute(
+                LIKE_SCRIPT,
+                Arrays.asList(BLOG_LIKED_KEY + id, BLOG_HOT_KEY, BLOG_LIKED_DIRTY_KEY),
+                userId.toString(), id.toString(), String.valueOf(System.currentTimeMillis())
+        );
+    }
+
+    @Override
+    public Result queryHotBlog(String cursor) {
+        PageCursor after = PageCursor.decode(cursor, PageCursor.Mode.SCORE);
+        if (after == null) {
+            return Result.fail("无效的分页游标");
+        }
+        //从上一页最后一条的 (热度, 博文id) 之后取当前页，多取一条判断是否还有下一页
+        List<?> rows = stringRedisTemplate.execute(HOT_PAGE_SCRIPT, Collections.singletonList(BLOG_HOT_KEY),
+                after.isFirst() ? "" : String.valueOf(after.getLast()),
+                String.valueOf(after.getOffset()), String.valueOf(MAX_PAGE_SIZE + 1));
+        CursorResult result = new CursorResult();
+        if (rows == null || rows.isEmpty()) {
+            result.setList(Collections.emptyList());
+            return Result.ok(result);
+        }
+        //脚本返回 博文id, 热度 交替排列
+        List<Long> ids = new ArrayList<>(rows.size() / 2);
+        List<Integer> likes = new ArrayList<>(rows.size() / 2);
+        for (int i = 0; i + 1 < rows.size(); i += 2) {
+            if (ids.size() == MAX_PAGE_SIZE) {
+                int last = ids.size() - 1;
+                result.setNextCursor(PageCursor.encode(PageCursor.Mode.SCORE, likes.get(last), ids.get(last)));
+                break;
+            }
+            ids.add(Long.valueOf(rows.get(i).toString()));
+            likes.add((int) Double.parseDouble(rows.get(i + 1).toString()));
+        }
+        //一次查出博文，按排行顺序组装
+        Map<Long, Blog> blogMap = listByIds(ids).stream().collect(Collectors.toMap(Blog::getId, Function.identity()));
+        List<Blog> blogs = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Blog blog = blogMap.get(ids.get(i));
+            if (blog != null) {
+                //redis中的热度比数据库新
+                blog.setLiked(likes.get(i));
+                blogs.add(blog);
+            }
+        }
+        fillBlogUsers(blogs);
+        fillBlogLiked(blogs);
+        result.setList(blogs);
+        return Result.ok(result);
+    }
+
+    @Override
+    public Result queryMyBlog(String cursor) {
+        PageCursor after = PageCursor.decode(cursor, PageCursor.Mode.ID);
+        if (after == null) {
+            return Result.fail("无效的分页游标");
+        }
+        //按(user_id, id)索引从上一页最后一个id往前查，新发布的在前
+        List<Blog> blogs = query()
+                .eq("user_id", UserHolder.getUser().getId())
+                .lt(!after.isFirst(), "id", after.getLast())
+                .orderByDesc("id")
+                .last("LIMIT " + (MAX_PAGE_SIZE + 1))
+                .list();
+        return Result.ok(CursorResult.of(blogs, MAX_PAGE_SIZE, blog -> PageCursor.encode(PageCursor.Mode.ID, blog.getId(), 0)));
+    }
+
+    /**
+     * 批量补全作者昵称和头像
+     */
+    private void fillBlogUsers(List<Blog> blogs) {
+        Set<Long> userIds = blogs.stream().map(Blog::getUserId).collect(Collectors.toSet());
+        Map<Long, UserDTO> users = userService.queryUserDTOs(userIds);
+        for (Blog blog : blogs) {
+            UserDTO user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        }
+    }
+
+    /**
+     * 已登录时，一次管道查询当前用户是否点赞过每篇博文
+     */
+    private void fillBlogLiked(List<Blog> blogs) {
+        UserDTO user = UserHolder.getUser();
+        if (user == null || blogs.isEmpty()) {
+            return;
+        }
+        String userId = user.getId().toString();
+        List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Blog blog : blogs) {
+                conn.zScore(BLOG_LIKED_KEY + blog.getId(), userId);
+            }
+            return null;
+        });
+        for (int i = 0; i < blogs.size(); i++) {
+            blogs.get(i).setIsLike(scores.get(i) != null);
+        }
+    }
+
+    /**
+     * 定时把点赞数有变化的博文批量写回数据库，以热门排行中的热度为准
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.liked-flush-interval:10000}")
+    public void flushLiked() {
+        while (true) {
+            List<String> ids = stringRedisTemplate.opsForSet().pop(BLOG_LIKED_DIRTY_KEY, LIKED_FLUSH_BATCH);
+            if (ids == null || ids.isEmpty()) {
+                return;
+            }
+            try {
+                List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    for (String id : ids) {
+                        conn.zScore(BLOG_HOT_KEY, id);
+                    }
+                    return null;
+                });
+                List<Blog> blogs = new ArrayList<>(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    Object score = scores.get(i);
+                    if (score != null) {
+                        blogs.add(new Blog().setId(Long.valueOf(ids.get(i))).setLiked(((Double) score).intValue()));
+                    }
+                }
+                if (!blogs.isEmpty()) {
+                    getBaseMapper().updateLikedBatch(blogs);
+                }
+            } catch (Exception e) {
+                //写回失败，放回待写回集合，下次重试
+                stringRedisTemplate.opsForSet().add(BLOG_LIKED_DIRTY_KEY, ids.toArray(new String[0]));
+                log.error("点赞数写回数据库失败, 数量: {}", ids.size(), e);
+                return;
+            }
+            if (ids.size() < LIKED_FLUSH_BATCH) {
+                return;
+            }
+        }
+    }
 }
@@ -1,11 +1,34 @@
 package com.hmdp.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Follow;
 import com.hmdp.mapper.FollowMapper;
 import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.FANS_KEY;
+import static com.hmdp.utils.RedisConstants.FOLLOWS_KEY;
+import static com.hmdp.utils.RedisConstants.FOLLOW_LOADED_KEY;
+
 /**
  * <p>
  *  服务实现类
@@ -14,7 +37,104 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> implements IFollowService {
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private IUserService userService;
+
+    /**
+     * 回填关注集合时每批读取的关注记录数
+     */
+    private static final int FOLLOW_LOAD_BATCH = 1000;
+
+    /**
+     * 关注集合和粉丝集合只在关注/取关时增量维护，首次启动或redis数据丢失后为空，
+     * 共同关注、关注判断和博文推送都会出错，所以按数据库回填。
+     * 全部写完才设置标记key，中途失败下次启动重新回填，SADD重复写入无影响
+     */
+    @PostConstruct
+    private void initFollowSets() {
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(FOLLOW_LOADED_KEY))) {
+            return;
+        }
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Follow> follows = query().select("id", "user_id", "follow_user_id").gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT " + FOLLOW_LOAD_BATCH).list();
+            if (!follows.isEmpty()) {
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    for (Follow follow : follows) {
+                        conn.sAdd(FOLLOWS_KEY + follow.getUserId(), follow.getFollowUserId().toString());
+                        conn.sAdd(FANS_KEY + follow.getFollowUserId(), follow.getUserId().toString());
+                    }
+                    return null;
+                });
+            }
+            count += follows.size();
+            if (follows.size() < FOLLOW_LOAD_BATCH) {
+                break;
+            }
+            lastId = follows.get(follows.size() - 1).getId();
+        }
+        stringRedisTemplate.opsForValue().set(FOLLOW_LOADED_KEY, String.valueOf(System.currentTimeMillis()));
+        log.info("关注集合回填完成，共{}条", count);
+    }
+
+    @Override
+    public Result follow(Long followUserId, Boolean isFollow) {
+        Long userId = UserHolder.getUser().getId();
+        if (userId.equals(followUserId)) {
+            return Result.fail("不能关注自己");
+        }
+        String followsKey = FOLLOWS_KEY + userId;
+        String fansKey = FANS_KEY + followUserId;
+        if (Boolean.TRUE.equals(isFollow)) {
+            //关注：由唯一索引uk_user_follow保证不重复，并发的重复点击只有一个能插入
+            Follow follow = new Follow();
+            follow.setUserId(userId);
+            follow.setFollowUserId(followUserId);
+            try {
+                save(follow);
+            } catch (DuplicateKeyException e) {
+                //已经关注过，仍然写一次集合，修复可能缺失的redis数据
+                log.debug("重复关注, userId: {}, followUserId: {}", userId, followUserId);
+            }
+            //关注集合用于共同关注，粉丝集合用于发博文时推送
+            stringRedisTemplate.opsForSet().add(followsKey, followUserId.toString());
+            stringRedisTemplate.opsForSet().add(fansKey, userId.toString());
+        } else {
+            //取关
+            remove(new QueryWrapper<Follow>().eq("user_id", userId).eq("follow_user_id", followUserId));
+            stringRedisTemplate.opsForSet().remove(followsKey, followUserId.toString());
+            stringRedisTemplate.opsForSet().remove(fansKey, userId.toString());
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public Result isFollow(Long followUserId) {
+        Long userId = UserHolder.getUser().getId();
+        Boolean member = stringRedisTemplate.opsForSet().isMember(FOLLOWS_KEY + userId, followUserId.toString());
+        return Result.ok(Boolean.TRUE.equals(member));
+    }
+
+    @Override
+    public Result followCommons(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        //两个关注集合求交集
+        Set<String> intersect = stringRedisTemplate.opsForSet().intersect(FOLLOWS_KEY + userId, FOLLOWS_KEY + id);
+        if (intersect == null || intersect.isEmpty()) {
+            return Result.ok(Collections.emptyList());
+        }
+        List<Long> ids = intersect.stream().map(Long::valueOf).collect(Collectors.toList());
+        Map<Long, UserDTO> users = userService.queryUserDTOs(ids);
+        List<UserDTO> result = ids.stream().map(users::get).filter(Objects::nonNull).collect(Collectors.toList());
+        return Result.ok(result);
+    }
 }
@@ -4,26 +4,57 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.injector.methods.UpdateById;
+import com.hmdp.dto.CursorResult;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.BloomFilter;
+import com.hmdp.utils.BloomFilterClient;
 import com.hmdp.utils.CacheClient;
-import com.hmdp.utils.RedisData;
+import com.hmdp.utils.PageCursor;
+import com.hmdp.utils.ShopSearchClient;
+import com.hmdp.utils.ShopSearchIndex;
+import com.hmdp.utils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.annotations.Update;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.LOCK_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.SHOP_GEO_KEY;
+import static com.hmdp.utils.SystemConstants.BLOOM_FILTER_INIT_BATCH;
+import static com.hmdp.utils.SystemConstants.SEARCH_INDEX_LOAD_BATCH;
+import static com.hmdp.utils.SystemConstants.DEFAULT_PAGE_SIZE;
+import static com.hmdp.utils.SystemConstants.MAX_PAGE_SIZE;
+import static com.hmdp.utils.SystemConstants.SHOP_BLOOM_FILTER;
 
 /**
  * <p>
@@ -33,6 +64,7 @@ import java.util.concurrent.TimeUnit;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
@@ -45,9 +77,32 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         if (id == null){
             return Result.fail("店铺id不能为空");
         }
-        updateById(shop);
-        //删除缓存
-        stringRedisTemplate.delete("cache:shop:" + id);
+        //坐标或类型变化时需要同步GEO，先取旧类型
+        boolean geoChanged = shop.getX() != null || shop.getY() != null || shop.getTypeId() != null;
+        //名称或商圈变化时需要更新搜索索引
+        boolean indexChanged = shop.getName() != null || shop.getArea() != null;
+        Shop old = geoChanged ? getById(id) : null;
+        if (!updateById(shop)) {
+            return Result.fail("店铺不存在");
+        }
+        //事务内读到的是本事务写入后的数据
+        Shop fresh = geoChanged || indexChanged ? getById(id) : null;
+        //删缓存、同步GEO和搜索索引都在提交后执行：回滚时不会领先于数据库，
+        //其他节点收到清除广播后重建缓存也不会读到提交前的旧数据
+        TransactionUtils.afterCommit(() -> {
+            //删除缓存，同时广播清除各节点的本地缓存
+            cacheClient.evict("cache:shop:" + id);
+            if (fresh == null) {
+                return;
+            }
+            if (old != null) {
+                stringRedisTemplate.opsForGeo().remove(SHOP_GEO_KEY + old.getTypeId(), id.toString());
+                stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + fresh.getTypeId(), new Point(fresh.getX(), fresh.getY()), id.toString());
+            }
+            if (indexChanged) {
+                shopSearchClient.put(id, fresh.getName(), fresh.getArea());
+            }
+        });
         return Result.ok();
     }
 
@@ -55,28 +110,271 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     private StringRedisTemplate stringRedisTemplate;
     @Resource
     private CacheClient cacheClient;
+    @Resource
+    private BloomFilterClient bloomFilterClient;
+    @Resource
+    private ShopSearchClient shopSearchClient;
+    @Value("${hmdp.bloom.shop-expected-insertions:1000000}")
+    private long bloomExpectedInsertions;
+    @Value("${hmdp.bloom.fpp:0.01}")
+    private double bloomFpp;
+    private BloomFilter shopBloomFilter;
+
+    /**
+     * 启动时用全部店铺id构建布隆过滤器，拦截不存在的店铺id
+     */
+    @PostConstruct
+    private void initBloomFilter() {
+        shopBloomFilter = bloomFilterClient.create(SHOP_BLOOM_FILTER, bloomExpectedInsertions, bloomFpp);
+        int count = loadBloomFilter();
+        cacheClient.registerBloomFilter(CACHE_SHOP_KEY, shopBloomFilter);
+        log.info("店铺布隆过滤器初始化完成，共{}条", count);
+    }
+
+    /**
+     * 其他节点新增的id靠发布订阅同步，消息丢失（断线、重启期间）的id会一直被误判为不存在，
+     * 所以定期从数据库把全部id再写一遍。布隆过滤器只增不减，重复写入无影响，也不需要替换过滤器
+     */
+    @Scheduled(initialDelayString = "${hmdp.bloom.resync-interval:600000}",
+            fixedDelayString = "${hmdp.bloom.resync-interval:600000}")
+    public void resyncBloomFilter() {
+        log.debug("店铺布隆过滤器重新同步完成，共{}条", loadBloomFilter());
+    }
+
+    private int loadBloomFilter() {
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Shop> shops = query().select("id").gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT " + BLOOM_FILTER_INIT_BATCH).list();
+            shops.forEach(shop -> shopBloomFilter.put(shop.getId()));
+            count += shops.size();
+            if (shops.size() < BLOOM_FILTER_INIT_BATCH) {
+                return count;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 启动时把全部店铺的名称和商圈载入搜索索引，之后随新增和修改增量更新
+     */
+    @PostConstruct
+    private void initSearchIndex() {
+        loadSearchIndex();
+        log.info("店铺搜索索引初始化完成，共{}条", shopSearchClient.size());
+    }
+
+    /**
+     * 与布隆过滤器相同，定期从数据库重新载入，补上丢失的索引更新消息；文本未变的店铺不会重建词条
+     */
+    @Scheduled(initialDelayString = "${hmdp.search.resync-interval:600000}",
+            fixedDelayString = "${hmdp.search.resync-interval:600000}")
+    public void resyncSearchIndex() {
+        loadSearchIndex();
+        log.debug("店铺搜索索引重新同步完成，共{}条", shopSearchClient.size());
+    }
+
+    private void loadSearchIndex() {
+        long lastId = 0;
+        while (true) {
+            List<Shop> shops = query().select("id", "name", "area").gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT " + SEARCH_INDEX_LOAD_BATCH).list();
+            shops.forEach(shop -> shopSearchClient.load(shop.getId(), shop.getName(), shop.getArea()));
+            if (shops.size() < SEARCH_INDEX_LOAD_BATCH) {
+                return;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public Result saveShop(Shop shop) {
+        save(shop);
+        //新店铺id加入布隆过滤器
+        bloomFilterClient.add(SHOP_BLOOM_FILTER, shop.getId());
+        //加入搜索索引
+        shopSearchClient.put(shop.getId(), shop.getName(), shop.getArea());
+        //写入所属类型的GEO
+        if (shop.getX() != null && shop.getY() != null) {
+            stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + shop.getTypeId(), new Point(shop.getX(), shop.getY()), shop.getId().toString());
+        }
+        return Result.ok(shop.getId());
+    }
+
+    /**
+     * 附近店铺的查询半径（米）
+     */
+    private static final double SHOP_GEO_RADIUS_METERS = 5000;
+
+    @Override
+    public Result queryShopByType(Integer typeId, String cursor, Double x, Double y) {
+        boolean geo = x != null && y != null;
+        PageCursor after = PageCursor.decode(cursor, geo ? PageCursor.Mode.GEO : PageCursor.Mode.ID);
+        //GEO每页都要从头取，已返回条数必须有上限，否则伪造的游标会让COUNT溢出
+        if (after == null || (geo && after.getOffset() > MAX_GEO_OFFSET)) {
+            return Result.fail("无效的分页游标");
+        }
+        //没有坐标，按(type_id, id)索引从上一页最后一个id往后查，多查一条判断是否还有下一页
+        if (!geo) {
+            List<Shop> shops = query()
+                    .eq("type_id", typeId)
+                    .gt(!after.isFirst(), "id", after.getLast())
+                    .orderByAsc("id")
+                    .last("LIMIT " + (DEFAULT_PAGE_SIZE + 1))
+                    .list();
+            return Result.ok(CursorResult.of(shops, DEFAULT_PAGE_SIZE, shop -> PageCursor.encode(PageCursor.Mode.ID, shop.getId(), 0)));
+        }
+        //有坐标，GEO没有按距离续查的命令，只能从头取到本页末尾（半径有限，数量有上限），游标里记已返回的条数
+        long from = after.getOffset();
+        long end = from + DEFAULT_PAGE_SIZE;
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = stringRedisTemplate.opsForGeo().radius(
+                SHOP_GEO_KEY + typeId,
+                new Circle(new Point(x, y), new Distance(SHOP_GEO_RADIUS_METERS)),
+                RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs().includeDistance().sortAscending().limit(end + 1)
+        );
+        if (results == null || results.getContent().size() <= from) {
+            CursorResult empty = new CursorResult();
+            empty.setList(Collections.emptyList());
+            return Result.ok(empty);
+        }
+        //截取当前页的id和距离
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> content = results.getContent();
+        boolean hasMore = content.size() > end;
+        content = content.subList((int) from, (int) Math.min(end, content.size()));
+        List<Long> ids = new ArrayList<>(content.size());
+        Map<Long, Double> distances = new HashMap<>(content.size() * 2);
+        for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : content) {
+            Long id = Long.valueOf(result.getContent().getName());
+            ids.add(id);
+            distances.put(id, result.getDistance().getValue());
+        }
+        //一次MGET从缓存取店铺详情，未命中的一次listByIds补齐并写回
+        Map<Long, Shop> cached = cacheClient.queryBatchWithLogicalExpire(CACHE_SHOP_KEY, ids, Shop.class,
+                this::loadShops, SHOP_CACHE_TTL_MINUTES, TimeUnit.MINUTES, LOCK_SHOP_KEY);
+        List<Shop> shops = new ArrayList<>(cached.size());
+        for (Shop shop : cached.values()) {
+            //缓存中的对象可能被本地缓存共享，复制后再设置距离
+            Shop copy = BeanUtil.copyProperties(shop, Shop.class);
+            copy.setDistance(distances.get(copy.getId()));
+            shops.add(copy);
+        }
+        CursorResult result = new CursorResult();
+        result.setList(shops);
+        //超过上限的部分不再翻页
+        result.setNextCursor(hasMore && end <= MAX_GEO_OFFSET ? PageCursor.encode(PageCursor.Mode.GEO, 0, end) : null);
+        return Result.ok(result);
+    }
+
+    @Override
+    public Result queryShopByName(String name, String cursor) {
+        boolean search = StrUtil.isNotBlank(name);
+        PageCursor after = PageCursor.decode(cursor, search ? PageCursor.Mode.SEARCH : PageCursor.Mode.ID);
+        if (after == null) {
+            return Result.fail("无效的分页游标");
+        }
+        if (!search) {
+            //没有关键字，按主键从上一页最后一个id往后扫
+            List<Shop> shops = query()
+                    .gt(!after.isFirst(), "id", after.getLast())
+                    .orderByAsc("id")
+                    .last("LIMIT " + (MAX_PAGE_SIZE + 1))
+                    .list();
+            return Result.ok(CursorResult.of(shops, MAX_PAGE_SIZE, shop -> PageCursor.encode(PageCursor.Mode.ID, shop.getId(), 0)));
+        }
+        //有关键字，查本地倒排索引按相关度排序，游标为上一页最后一条的 (得分, id)
+        int maxScore = after.isFirst() ? Integer.MAX_VALUE : (int) Math.min(after.getLast(), Integer.MAX_VALUE);
+        List<ShopSearchIndex.Hit> hits = shopSearchClient.search(name, maxScore, after.getOffset(), MAX_PAGE_SIZE + 1);
+        CursorResult result = new CursorResult();
+        if (hits.size() > MAX_PAGE_SIZE) {
+            hits = hits.subList(0, MAX_PAGE_SIZE);
+            ShopSearchIndex.Hit last = hits.get(MAX_PAGE_SIZE - 1);
+            result.setNextCursor(PageCursor.encode(PageCursor.Mode.SEARCH, last.getScore(), last.getId()));
+        }
+        //店铺详情走缓存，一次MGET，未命中的一次listByIds补齐
+        List<Long> ids = hits.stream().map(ShopSearchIndex.Hit::getId).collect(Collectors.toList());
+        Map<Long, Shop> shops = ids.isEmpty() ? Collections.emptyMap() : cacheClient.queryBatchWithLogicalExpire(
+                CACHE_SHOP_KEY, ids, Shop.class, this::loadShops, SHOP_CACHE_TTL_MINUTES, TimeUnit.MINUTES, LOCK_SHOP_KEY);
+        result.setList(new ArrayList<>(shops.values()));
+        return Result.ok(result);
+    }
+
+    /**
+     * 附近店铺最多翻到的条数，GEORADIUS每页都从头取到本页末尾
+     */
+    private static final int MAX_GEO_OFFSET = 10000;
+
+    @Override
+    public Result suggestShopName(String prefix) {
+        return Result.ok(shopSearchClient.suggest(prefix, MAX_PAGE_SIZE));
+    }
+
+    private Map<Long, Shop> loadShops(Collection<Long> ids) {
+        return listByIds(ids).stream().collect(Collectors.toMap(Shop::getId, Function.identity()));
+    }
+
+    @Override
+    public int loadShopGeo() {
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Shop> shops = query().select("id", "type_id", "x", "y").gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT " + BLOOM_FILTER_INIT_BATCH).list();
+            //按类型分组，每个类型一次GEOADD
+            Map<Long, List<RedisGeoCommands.GeoLocation<String>>> byType = shops.stream().collect(Collectors.groupingBy(
+                    Shop::getTypeId,
+                    Collectors.mapping(shop -> new RedisGeoCommands.GeoLocation<>(shop.getId().toString(), new Point(shop.getX(), shop.getY())),
+                            Collectors.toList())));
+            byType.forEach((typeId, locations) -> stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + typeId, locations));
+            count += shops.size();
+            if (shops.size() < BLOOM_FILTER_INIT_BATCH) {
+                break;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+        log.info("店铺GEO加载完成，共{}条", count);
+        return count;
+    }
+
     @Override
     public Result queryById(Long id) {
 
 //        Shop shop = cacheClient.queryWithPassThrough("cache:shop:", id, Shop.class, this::getById, 10L, TimeUnit.MINUTES);
         //Shop shop = cacheClient.queryWithMutexLock("cache:shop:", id, Shop.class, this::getById, 10L, TimeUnit.MINUTES, "lock:shop:");
-        Shop shop = cacheClient.queryWithLogicalExpire("cache:shop:", id, Shop.class, this::getById, 10L, TimeUnit.MINUTES, "lock:shop:");
+        Shop shop = cacheClient.queryWithLogicalExpire("cache:shop:", id, Shop.class, this::getById, SHOP_CACHE_TTL_MINUTES, TimeUnit.MINUTES, "lock:shop:");
         if (shop == null){
             return Result.fail("店铺不存在");
         }
         return Result.ok(shop);
     }
 
-    //缓存重建
-    public void saveShopToRedis(Long id,Long expireSeconds) throws InterruptedException {
+    /**
+     * 店铺逻辑过期缓存的有效期（分钟）
+     */
+    private static final long SHOP_CACHE_TTL_MINUTES = 10L;
 
-        Shop shop = getById(id);
-
-        Thread.sleep(200);//模拟缓存重建延迟
-
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireSeconds));
-        stringRedisTemplate.opsForValue().set("cache:shop:" + id, JSONUtil.toJsonStr(redisData));
-}
+    @Override
+    public int warmUpCache(int pageSize) {
+        long total = count();
+        long lastId = 0;
+        int loaded = 0;
+        while (true) {
+            //按id游标分页，避免深分页
+            List<Shop> shops = query().gt("id", lastId).orderByAsc("id").last("LIMIT " + pageSize).list();
+            if (shops.isEmpty()) {
+                break;
+            }
+            Map<String, Shop> page = new HashMap<>(shops.size() * 2);
+            shops.forEach(shop -> page.put(CACHE_SHOP_KEY + shop.getId(), shop));
+            //一个管道写入整页
+            cacheClient.setBatchWithLogicalExpire(page, SHOP_CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+            loaded += shops.size();
+            log.info("店铺缓存预热进度: {}/{}", loaded, total);
+            if (shops.size() < pageSize) {
+                break;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+        return loaded;
+    }
 }
@@ -6,6 +6,7 @@ import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.RedisRouter;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -13,6 +14,8 @@ import javax.annotation.Resource;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
+
 /**
  * <p>
  *  服务实现类
@@ -24,11 +27,12 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private RedisRouter redisRouter;
     @Override
     public Result queryList() {
-
-        String shopTypeListJson = stringRedisTemplate.opsForValue().get("cache:shop:list");
+        //与其他cache:前缀的缓存一样路由到缓存节点
+        StringRedisTemplate cacheRedis = redisRouter.forKey(CACHE_SHOP_TYPE_KEY);
+        String shopTypeListJson = cacheRedis.opsForValue().get(CACHE_SHOP_TYPE_KEY);
         List<ShopType> shopTypeList = null;
 
         if (shopTypeListJson != null) {
@@ -42,7 +46,7 @@ public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> i
         if(shopTypeList != null)
         {
             String jsonStr = JSONUtil.toJsonStr(shopTypeList);
-            stringRedisTemplate.opsForValue().set("cache:shop:list", jsonStr, 30, TimeUnit.MINUTES);
+            cacheRedis.opsForValue().set(CACHE_SHOP_TYPE_KEY, jsonStr, 30, TimeUnit.MINUTES);
         }
 
         else{
@@ -0,0 +1,213 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Sign;
+import com.hmdp.mapper.SignMapper;
+import com.hmdp.service.ISignService;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SIGN_USERS_KEY;
+import static com.hmdp.utils.RedisConstants.USER_SIGN_KEY;
+import static com.hmdp.utils.RedisConstants.USER_SIGN_TTL;
+
+/**
+ * <p>
+ * 用户签到 服务实现类
+ * <p>
+ * 签到记录存放在每个用户每月一个的bitmap中：sign:{userId}:{yyyyMM}，第n天对应第n-1位；
+ * 每晚把bitmap的前32位压缩成tb_sign中的一行，redis中只保留最近两个月，更早的连续签到从tb_sign中统计。
+ * </p>
+ */
+@Slf4j
+@Service
+public class SignServiceImpl extends ServiceImpl<SignMapper, Sign> implements ISignService {
+
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+    /**
+     * 每批压缩落库的用户数
+     */
+    private static final int COMPACT_BATCH = 500;
+    /**
+     * 统计连续签到时每批从tb_sign读取的月数
+     */
+    private static final int STREAK_BATCH = 12;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public Result sign() {
+        Long userId = UserHolder.getUser().getId();
+        LocalDate today = LocalDate.now();
+        String month = today.format(MONTH_FORMATTER);
+        String key = signKey(userId, month);
+        String usersKey = SIGN_USERS_KEY + month;
+        //SETBIT sign:{userId}:{yyyyMM} day-1 1，同时记录本月签到过的用户供压缩任务遍历
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.setBit(key, today.getDayOfMonth() - 1, true);
+            conn.expire(key, TimeUnit.DAYS.toSeconds(USER_SIGN_TTL));
+            conn.sAdd(usersKey, userId.toString());
+            conn.expire(usersKey, TimeUnit.DAYS.toSeconds(USER_SIGN_TTL));
+            return null;
+        });
+        return Result.ok();
+    }
+
+    @Override
+    public Result signCount() {
+        Long userId = UserHolder.getUser().getId();
+        LocalDate today = LocalDate.now();
+        int dayOfMonth = today.getDayOfMonth();
+        //一次BITFIELD取出本月截至今天的签到位，从最低位（今天）往前数连续的1
+        long bits = readSignBits(signKey(userId, today.format(MONTH_FORMATTER)), dayOfMonth);
+        int count = Long.numberOfTrailingZeros(~bits);
+        if (count < dayOfMonth) {
+            return Result.ok(count);
+        }
+        //本月每天都签到了，连续签到延续到之前的月份：一直往前数，直到某个月末尾不是整月签到
+        LocalDate month = today.withDayOfMonth(1).minusMonths(1);
+        //redis中保留的月份直接读bitmap
+        LocalDate oldestInRedis = today.minusDays(USER_SIGN_TTL).withDayOfMonth(1);
+        while (!month.isBefore(oldestInRedis)) {
+            int days = month.lengthOfMonth();
+            long monthBits = readSignBits(signKey(userId, month.format(MONTH_FORMATTER)), days);
+            if (monthBits == 0) {
+                //没有签到，或者key已过期（只剩压缩结果），交给tb_sign判断
+                break;
+            }
+            int tail = Long.numberOfTrailingZeros(~monthBits);
+            count += tail;
+            if (tail < days) {
+                return Result.ok(count);
+            }
+            month = month.minusMonths(1);
+        }
+        //更早的月份已过期，读每晚压缩写入tb_sign的位图
+        return Result.ok(count + countCompactedStreak(userId, month));
+    }
+
+    /**
+     * 从month往前，按月倒序分批读取tb_sign，累加每月末尾连续签到的天数，遇到缺月或不是整月签到为止
+     */
+    private int countCompactedStreak(Long userId, LocalDate month) {
+        int count = 0;
+        while (true) {
+            int year = month.getYear();
+            int monthValue = month.getMonthValue();
+            List<Sign> signs = query().select("year", "month", "bitmap").eq("user_id", userId)
+                    .and(w -> w.lt("year", year).or(o -> o.eq("year", year).le("month", monthValue)))
+                    .orderByDesc("year", "month").last("LIMIT " + STREAK_BATCH).list();
+            for (Sign sign : signs) {
+                if (sign.getYear() != month.getYear() || sign.getMonth() != month.getMonthValue()) {
+                    //缺了一整个月
+                    return count;
+                }
+                int days = month.lengthOfMonth();
+                //tb_sign中最高位(第31位)为1号，月末在第32-days位
+                int tail = Math.min(Long.numberOfTrailingZeros(~(sign.getBitmap() >>> (32 - days))), days);
+                count += tail;
+                if (tail < days) {
+                    return count;
+                }
+                month = month.minusMonths(1);
+            }
+            if (signs.size() < STREAK_BATCH) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * BITFIELD key GET u{days} 0
+     */
+    private long readSignBits(String key, int days) {
+        List<Long> result = stringRedisTemplate.opsForValue().bitField(key,
+                BitFieldSubCommands.create().get(BitFieldSubCommands.BitFieldType.unsigned(days)).valueAt(0));
+        if (result == null || result.isEmpty() || result.get(0) == null) {
+            return 0;
+        }
+        return result.get(0);
+    }
+
+    /**
+     * 每晚把前一天所在月份的签到bitmap压缩写入tb_sign（每月1号压缩的是上个月的最终结果）。
+     * 写入是幂等的覆盖，多个节点同时执行也没有问题。
+     */
+    @Scheduled(cron = "${hmdp.sign.compact-cron:0 30 2 * * ?}")
+    public void compactSigns() {
+        LocalDate day = LocalDate.now().minusDays(1);
+        String month = day.format(MONTH_FORMATTER);
+        int count = 0;
+        List<Long> batch = new ArrayList<>(COMPACT_BATCH);
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet().scan(SIGN_USERS_KEY + month,
+                ScanOptions.scanOptions().count(COMPACT_BATCH).build())) {
+            while (cursor.hasNext()) {
+                batch.add(Long.valueOf(cursor.next()));
+                if (batch.size() == COMPACT_BATCH) {
+                    count += compactBatch(batch, day);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                count += compactBatch(batch, day);
+            }
+        } catch (Exception e) {
+            log.error("签到记录压缩失败, month: {}", month, e);
+            return;
+        }
+        log.info("签到记录压缩完成, month: {}, 用户数: {}", month, count);
+    }
+
+    private int compactBatch(List<Long> userIds, LocalDate day) {
+        String month = day.format(MONTH_FORMATTER);
+        //一次管道读取每个用户的前32位
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            BitFieldSubCommands get32 = BitFieldSubCommands.create()
+                    .get(BitFieldSubCommands.BitFieldType.unsigned(32)).valueAt(0);
+            for (Long userId : userIds) {
+                connection.bitField(signKey(userId, month).getBytes(StandardCharsets.UTF_8), get32);
+            }
+            return null;
+        });
+        List<Sign> signs = new ArrayList<>(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            Object result = results.get(i);
+            if (!(result instanceof List) || ((List<?>) result).isEmpty()) {
+                continue;
+            }
+            Sign sign = new Sign()
+                    .setUserId(userIds.get(i))
+                    .setYear(day.getYear())
+                    .setMonth(day.getMonthValue())
+                    .setBitmap(((Number) ((List<?>) result).get(0)).longValue());
+            signs.add(sign);
+        }
+        if (!signs.isEmpty()) {
+            getBaseMapper().upsertBatch(signs);
+        }
+        return signs.size();
+    }
+
+    private static String signKey(Long userId, String month) {
+        return USER_SIGN_KEY + userId + ":" + month;
+    }
+}
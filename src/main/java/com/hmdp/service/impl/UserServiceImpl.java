@@ -2,29 +2,42 @@ package com.hmdp.service.impl;
 
 import cn.hutool.captcha.generator.RandomGenerator;
 import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.bean.copier.CopyOptions;
-import cn.hutool.core.lang.UUID;
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.RandomUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.BloomFilter;
+import com.hmdp.utils.BloomFilterClient;
+import com.hmdp.utils.LoginTokenService;
 import com.hmdp.utils.RegexUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpSession;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
+import static com.hmdp.utils.SystemConstants.BLOOM_FILTER_INIT_BATCH;
+import static com.hmdp.utils.SystemConstants.USER_BLOOM_FILTER;
 import static com.hmdp.utils.SystemConstants.USER_NICK_NAME_PREFIX;
 
 /**
@@ -40,8 +53,83 @@ import static com.hmdp.utils.SystemConstants.USER_NICK_NAME_PREFIX;
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IUserService {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private BloomFilterClient bloomFilterClient;
+    @Resource
+    private LoginTokenService loginTokenService;
+    @Value("${hmdp.bloom.user-expected-insertions:1000000}")
+    private long bloomExpectedInsertions;
+    @Value("${hmdp.bloom.fpp:0.01}")
+    private double bloomFpp;
+    private BloomFilter userBloomFilter;
+    @Value("${hmdp.user.local-cache.maximum-size:10000}")
+    private long userCacheMaximumSize;
+    @Value("${hmdp.user.local-cache.expire-after-write:10m}")
+    private Duration userCacheExpireAfterWrite;
+
+    /**
+     * 用户展示信息（昵称、头像）的本地缓存，列表页批量补全作者信息时使用
+     */
+    private Cache<Long, UserDTO> userDTOCache;
+
+    @PostConstruct
+    private void initUserCache() {
+        userDTOCache = Caffeine.newBuilder()
+                .maximumSize(userCacheMaximumSize)
+                .expireAfterWrite(userCacheExpireAfterWrite)
+                .build();
+    }
+
+    /**
+     * 启动时用全部用户id构建布隆过滤器
+     */
+    @PostConstruct
+    private void initBloomFilter() {
+        userBloomFilter = bloomFilterClient.create(USER_BLOOM_FILTER, bloomExpectedInsertions, bloomFpp);
+        log.info("用户布隆过滤器初始化完成，共{}条", loadBloomFilter());
+    }
+
+    /**
+     * 定期从数据库把全部用户id再写一遍，补上丢失的发布订阅消息
+     */
+    @Scheduled(initialDelayString = "${hmdp.bloom.resync-interval:600000}",
+            fixedDelayString = "${hmdp.bloom.resync-interval:600000}")
+    public void resyncBloomFilter() {
+        log.debug("用户布隆过滤器重新同步完成，共{}条", loadBloomFilter());
+    }
+
+    private int loadBloomFilter() {
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<User> users = query().select("id").gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT " + BLOOM_FILTER_INIT_BATCH).list();
+            users.forEach(user -> userBloomFilter.put(user.getId()));
+            count += users.size();
+            if (users.size() < BLOOM_FILTER_INIT_BATCH) {
+                return count;
+            }
+            lastId = users.get(users.size() - 1).getId();
+        }
+    }
+
     @Override
-    public Result sendCode(String phone, HttpSession session) {
+    public boolean mightExist(Long userId) {
+        return bloomFilterClient.mightContain(USER_BLOOM_FILTER, userId);
+    }
+
+    @Override
+    public Map<Long, UserDTO> queryUserDTOs(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return userDTOCache.getAll(userIds, missIds -> listByIds(CollUtil.newArrayList(missIds)).stream()
+                .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
+                .collect(Collectors.toMap(UserDTO::getId, Function.identity())));
+    }
+
+    @Override
+    public Result sendCode(String phone) {
 
         //校验手机号
         if(RegexUtils.isPhoneInvalid( phone)){
@@ -51,7 +139,6 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         //生产验证码
         String code = RandomUtil.randomNumbers(6);
 
-        session.setAttribute("code",code);
         //TODO 调用阿里云短信服务发送验证码、试试邮箱验证码
 
         stringRedisTemplate.opsForValue().set(LOGIN_CODE_KEY+phone,code, LOGIN_CODE_TTL, TimeUnit.MINUTES);
@@ -80,37 +167,29 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         if (user == null){
             user=createUserWithPhone(loginForm.getPhone());
         }
-        //TODO 把用户信息存到redis，
-        //随机生成字符作为token
-        String token = UUID.fastUUID().toString();
-
-        //改为dto传输
-        UserDTO userDTO = new UserDTO();
-        CopyOptions.create()
-                .setIgnoreNullValue(true)
-                .setFieldValueEditor((fieldName,fieldvalue)->fieldvalue.toString());
-
-        BeanUtils.copyProperties(user, userDTO);
-        //把对象转为hash存储
-        Map<String, Object> userMap = BeanUtil.beanToMap(userDTO, new HashMap<>(),
-                CopyOptions.create()
-                        .setIgnoreNullValue(true)
-                        .setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString()));
-        stringRedisTemplate.opsForHash().putAll(LOGIN_USER_KEY+token, userMap);
-
-        //设置token有效期
-        stringRedisTemplate.expire(LOGIN_USER_KEY+token,LOGIN_USER_TTL,TimeUnit.MINUTES);
+        //签发token，按配置存到redis或签名自包含
+        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
+        String token = loginTokenService.createToken(userDTO);
 
         //返回token
         return Result.ok(token);
 
     }
 
+    @Override
+    public Result logout(String token) {
+        if (token != null) {
+            loginTokenService.logout(token);
+        }
+        return Result.ok();
+    }
+
     private User createUserWithPhone(String phone) {
         User user = new User();
         user.setPhone(phone);
         user.setNickName(USER_NICK_NAME_PREFIX+RandomUtil.randomString(10));
         save(user);
+        bloomFilterClient.add(USER_BLOOM_FILTER, user.getId());
         return user;
     }
 }
@@ -1,10 +1,56 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
+import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
+import com.hmdp.mapper.SeckillVoucherMapper;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.RedisRouter;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -14,7 +60,321 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
+    @Resource
+    private RedisRouter redisRouter;
+    /**
+     * 秒杀用的redis节点，不是注入的默认连接：秒杀脚本同时操作活动时间、库存、下单用户和订单stream，
+     * 这些key必须在同一节点，所以统一用订单stream的key路由，在init()中固定下来。
+     * 死信stream也通过它写入，与订单stream在同一节点
+     */
+    private StringRedisTemplate seckillRedis;
+    @Resource
+    private RedisIdWorker redisIdWorker;
+    @Resource
+    private SeckillVoucherMapper seckillVoucherMapper;
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+    }
+
+    @Override
+    public Result seckillVoucher(Long voucherId) {
+        Long userId = UserHolder.getUser().getId();
+        long orderId = redisIdWorker.nextId("order");
+        //执行lua脚本，活动时间、库存判断和一人一单在redis中原子完成，成功则把订单投递到stream，不访问数据库
+        Long result = seckillRedis.execute(
+                SECKILL_SCRIPT,
+                Arrays.asList(SECKILL_STOCK_KEY + voucherId, SECKILL_ORDER_KEY + voucherId, SECKILL_ORDER_STREAM,
+                        SECKILL_TIME_KEY + voucherId),
+                userId.toString(), voucherId.toString(), String.valueOf(orderId), String.valueOf(System.currentTimeMillis())
+        );
+        int r = result == null ? 1 : result.intValue();
+        switch (r) {
+            case 0:
+                break;
+            case 2:
+                return Result.fail("不能重复下单");
+            case 3:
+                return Result.fail("秒杀尚未开始");
+            case 4:
+                return Result.fail("秒杀已经结束");
+            default:
+                return Result.fail("库存不足");
+        }
+        //有购买资格，订单由消费者组异步落库
+        return Result.ok(orderId);
+    }
+
+    //================= 订单异步落库 =================
+    /**
+     * 单次从stream读取并批量落库的订单数
+     */
+    private static final int ORDER_BATCH_SIZE = 200;
+    /**
+     * 一条订单最多投递的次数，仍然失败则转入死信stream
+     */
+    private static final long MAX_DELIVERY_COUNT = 5;
+    private static final long MIN_RETRY_BACKOFF_MILLIS = 20;
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 2000;
+    /**
+     * 其他消费者的消息超过该时间未确认，视为该消费者已宕机
+     */
+    private static final Duration CLAIM_MIN_IDLE = Duration.ofMinutes(1);
+    private static final long CLAIM_INTERVAL_MILLIS = 30_000;
+    private static final long CLAIM_BATCH_SIZE = 1000;
+
+    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "seckill-order-consumer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile boolean running = true;
+    private String consumerName;
+
+    @PostConstruct
+    private void init() {
+        seckillRedis = redisRouter.forKey(SECKILL_ORDER_STREAM);
+        createGroupIfAbsent();
+        //消费者名称固定为主机名，重启后才能从自己的pending-list恢复未确认的消息
+        try {
+            consumerName = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            consumerName = "c1";
+        }
+        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
+    }
+
+    @PreDestroy
+    private void destroy() {
+        running = false;
+        SECKILL_ORDER_EXECUTOR.shutdown();
+    }
+
+    private void createGroupIfAbsent() {
+        try {
+            // XGROUP CREATE stream.orders g1 0 MKSTREAM
+            seckillRedis.execute((RedisCallback<Object>) connection -> connection.execute("XGROUP",
+                    bytes("CREATE"), bytes(SECKILL_ORDER_STREAM), bytes(SECKILL_ORDER_GROUP), bytes("0"), bytes("MKSTREAM")));
+        } catch (Exception e) {
+            //BUSYGROUP：消费者组已存在
+            log.debug("消费者组已存在: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private class VoucherOrderHandler implements Runnable {
+        @Override
+        public void run() {
+            //启动时先处理上次宕机遗留在pending-list中的消息
+            handlePendingList();
+            long nextClaimAt = 0;
+            while (running) {
+                try {
+                    //定期接管其他消费者长时间未确认的消息（消费者宕机或改名后不会再处理自己的pending-list）
+                    if (System.currentTimeMillis() >= nextClaimAt) {
+                        nextClaimAt = System.currentTimeMillis() + CLAIM_INTERVAL_MILLIS;
+                        if (claimIdleMessages() > 0) {
+                            handlePendingList();
+                        }
+                    }
+                    // XREADGROUP GROUP g1 c1 COUNT 200 BLOCK 2000 STREAMS stream.orders >
+                    List<MapRecord<String, Object, Object>> list = seckillRedis.opsForStream().read(
+                            Consumer.from(SECKILL_ORDER_GROUP, consumerName),
+                            StreamReadOptions.empty().count(ORDER_BATCH_SIZE).block(Duration.ofSeconds(2)),
+                            StreamOffset.create(SECKILL_ORDER_STREAM, ReadOffset.lastConsumed())
+                    );
+                    if (CollUtil.isEmpty(list)) {
+                        continue;
+                    }
+                    handleRecords(list);
+                } catch (Exception e) {
+                    log.error("处理订单异常", e);
+                    handlePendingList();
+                }
+            }
+        }
+
+        private void handlePendingList() {
+            long backoff = MIN_RETRY_BACKOFF_MILLIS;
+            while (running) {
+                boolean progressed;
+                try {
+                    // XREADGROUP GROUP g1 c1 COUNT 200 STREAMS stream.orders 0
+                    List<MapRecord<String, Object, Object>> list = seckillRedis.opsForStream().read(
+                            Consumer.from(SECKILL_ORDER_GROUP, consumerName),
+                            StreamReadOptions.empty().count(ORDER_BATCH_SIZE),
+                            StreamOffset.create(SECKILL_ORDER_STREAM, ReadOffset.from("0"))
+                    );
+                    if (CollUtil.isEmpty(list)) {
+                        //pending-list已清空
+                        break;
+                    }
+                    progressed = handlePendingRecords(list);
+                } catch (Exception e) {
+                    log.error("处理pending订单异常", e);
+                    progressed = false;
+                }
+                if (progressed) {
+                    backoff = MIN_RETRY_BACKOFF_MILLIS;
+                    continue;
+                }
+                //整批都没有进展（例如数据库不可用），退避后重试
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+
+        /**
+         * 先整批落库，失败时逐条处理，把出错的订单和正常订单隔开。
+         * 超过投递次数仍失败、且不是数据库暂时不可用的订单转入死信stream，不再阻塞后续订单
+         * @return 是否有订单被确认（落库或转入死信）
+         */
+        private boolean handlePendingRecords(List<MapRecord<String, Object, Object>> list) {
+            try {
+                handleRecords(list);
+                return true;
+            } catch (Exception e) {
+                log.error("批量处理pending订单失败，改为逐条处理", e);
+            }
+            Map<String, Long> deliveries = deliveryCounts(list);
+            boolean progressed = false;
+            for (MapRecord<String, Object, Object> record : list) {
+                try {
+                    handleRecords(Collections.singletonList(record));
+                    progressed = true;
+                } catch (Exception e) {
+                    long delivered = deliveries.getOrDefault(record.getId().getValue(), 0L);
+                    if (!isRetryable(e) && delivered >= MAX_DELIVERY_COUNT) {
+                        deadLetter(record, e);
+                        progressed = true;
+                    } else {
+                        log.error("订单落库失败，已投递{}次, id: {}, 订单: {}", delivered, record.getId(), record.getValue(), e);
+                    }
+                }
+            }
+            return progressed;
+        }
+
+        private void handleRecords(List<MapRecord<String, Object, Object>> list) {
+            List<VoucherOrder> orders = new ArrayList<>(list.size());
+            for (MapRecord<String, Object, Object> record : list) {
+                orders.add(BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true));
+            }
+            //同一事务内批量落库，成功后统一ACK
+            createVoucherOrders(orders);
+            RecordId[] ids = list.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+            seckillRedis.opsForStream().acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, ids);
+        }
+    }
+
+    /**
+     * 每条消息已投递的次数（XPENDING），XREADGROUP读取pending-list时会累加
+     */
+    private Map<String, Long> deliveryCounts(List<MapRecord<String, Object, Object>> list) {
+        Map<String, Long> counts = new HashMap<>(list.size() * 2);
+        try {
+            PendingMessages pending = seckillRedis.opsForStream().pending(SECKILL_ORDER_STREAM,
+                    Consumer.from(SECKILL_ORDER_GROUP, consumerName),
+                    Range.closed(list.get(0).getId().getValue(), list.get(list.size() - 1).getId().getValue()),
+                    list.size());
+            pending.forEach(message -> counts.put(message.getIdAsString(), message.getTotalDeliveryCount()));
+        } catch (Exception e) {
+            //查不到投递次数时按0处理，本轮不转死信
+            log.error("查询pending订单投递次数失败", e);
+        }
+        return counts;
+    }
+
+    /**
+     * 转入死信stream并确认原消息，附带失败原因，人工处理后可重新投递到stream.orders
+     */
+    private void deadLetter(MapRecord<String, Object, Object> record, Exception e) {
+        Map<String, String> body = new HashMap<>();
+        record.getValue().forEach((field, value) -> body.put(field.toString(), value.toString()));
+        body.put("sourceId", record.getId().getValue());
+        body.put("error", String.valueOf(e.getMessage()));
+        seckillRedis.opsForStream().add(SECKILL_ORDER_DEAD_LETTER_STREAM, body);
+        seckillRedis.opsForStream().acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, record.getId());
+        log.error("订单多次落库失败，已转入死信stream, id: {}, 订单: {}", record.getId(), body, e);
+    }
+
+    /**
+     * 数据库连接失败、超时等暂时性错误一直重试，不转死信
+     */
+    private static boolean isRetryable(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    /**
+     * 把其他消费者空闲超过CLAIM_MIN_IDLE的pending消息转到自己名下（XCLAIM），之后从自己的pending-list处理
+     * @return 接管的消息数
+     */
+    private int claimIdleMessages() {
+        PendingMessages pending = seckillRedis.opsForStream().pending(
+                SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, Range.unbounded(), CLAIM_BATCH_SIZE);
+        List<RecordId> idle = pending.stream()
+                .filter(message -> !consumerName.equals(message.getConsumerName()))
+                .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(CLAIM_MIN_IDLE) >= 0)
+                .map(PendingMessage::getId)
+                .collect(Collectors.toList());
+        if (idle.isEmpty()) {
+            return 0;
+        }
+        // XCLAIM stream.orders g1 c1 60000 id...，min-idle保证不会抢走刚被其他消费者读到的消息
+        //（Lettuce不支持JUSTID，消息体随结果返回但不使用，之后统一从自己的pending-list读取）
+        List<ByteRecord> claimed = seckillRedis.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.xClaim(bytes(SECKILL_ORDER_STREAM), SECKILL_ORDER_GROUP, consumerName,
+                        RedisStreamCommands.XClaimOptions.minIdle(CLAIM_MIN_IDLE).ids(idle)));
+        int count = claimed == null ? 0 : claimed.size();
+        if (count > 0) {
+            log.warn("接管其他消费者未确认的订单{}条", count);
+        }
+        return count;
+    }
+
+    private void createVoucherOrders(List<VoucherOrder> orders) {
+        transactionTemplate.executeWithoutResult(status -> {
+            //pending重放时订单可能已经落库过，过滤掉避免主键冲突和重复扣库存
+            List<Long> orderIds = orders.stream().map(VoucherOrder::getId).collect(Collectors.toList());
+            Set<Long> existIds = listByIds(orderIds).stream().map(VoucherOrder::getId).collect(Collectors.toSet());
+            List<VoucherOrder> newOrders = orders.stream()
+                    .filter(order -> !existIds.contains(order.getId()))
+                    .collect(Collectors.toList());
+            if (newOrders.isEmpty()) {
+                return;
+            }
+            //一条多值insert写入整批订单
+            getBaseMapper().insertBatch(newOrders);
+            //每个券一条update扣减库存
+            Map<Long, Long> countByVoucher = newOrders.stream()
+                    .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, Collectors.counting()));
+            countByVoucher.forEach((voucherId, count) -> {
+                int updated = seckillVoucherMapper.decreaseStock(voucherId, count);
+                if (updated == 0) {
+                    //回滚整批，逐条重试后仍失败的订单转入死信
+                    throw new IllegalStateException("数据库库存不足，与redis库存不一致，voucherId: " + voucherId + ", count: " + count);
+                }
+            });
+        });
+    }
 }
@@ -7,11 +7,22 @@ import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.RedisRouter;
+import com.hmdp.utils.TransactionUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_TIME_KEY;
 
 /**
  * <p>
@@ -26,6 +37,8 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
 
     @Resource
     private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private RedisRouter redisRouter;
 
     @Override
     public Result queryVoucherOfShop(Long shopId) {
@@ -47,5 +60,21 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
+        // 活动时间和库存预热到redis，秒杀请求只走redis；与秒杀脚本的其他key同一节点，统一按订单stream路由。
+        // 事务提交后才写入，插入失败回滚时redis里不会留下可以下单、却没有数据库记录的秒杀券
+        Map<String, String> window = new HashMap<>(4);
+        window.put("begin", String.valueOf(toEpochMilli(voucher.getBeginTime())));
+        window.put("end", String.valueOf(toEpochMilli(voucher.getEndTime())));
+        String stock = voucher.getStock().toString();
+        Long voucherId = voucher.getId();
+        TransactionUtils.afterCommit(() -> {
+            StringRedisTemplate seckillRedis = redisRouter.forKey(SECKILL_ORDER_STREAM);
+            seckillRedis.opsForHash().putAll(SECKILL_TIME_KEY + voucherId, window);
+            seckillRedis.opsForValue().set(SECKILL_STOCK_KEY + voucherId, stock);
+        });
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 }
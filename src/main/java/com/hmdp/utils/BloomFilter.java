@@ -0,0 +1,67 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 本地位图实现的布隆过滤器，按long型id判断"一定不存在"，线程安全
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int numHashes;
+
+    /**
+     * @param expectedInsertions 预计元素数量
+     * @param fpp 期望误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long numBits = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (numBits + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.numHashes = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(long value) {
+        long h1 = mix(value);
+        long h2 = mix(h1);
+        long combined = h1;
+        for (int i = 0; i < numHashes; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            if ((bits.get(word) & mask) == 0) {
+                bits.accumulateAndGet(word, mask, (a, b) -> a | b);
+            }
+            combined += h2;
+        }
+    }
+
+    /**
+     * @return false表示一定不存在，true表示可能存在
+     */
+    public boolean mightContain(long value) {
+        long h1 = mix(value);
+        long h2 = mix(h1);
+        long combined = h1;
+        for (int i = 0; i < numHashes; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    /**
+     * splitmix64的混淆函数，把连续的自增id打散
+     */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,62 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 管理各业务的本地布隆过滤器，新增id时通过redis发布订阅同步到所有节点。
+ * 发布订阅不保证送达，各业务需定期从数据库重新写入全部id（见 hmdp.bloom.resync-interval）
+ */
+@Slf4j
+@Component
+public class BloomFilterClient {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Map<String, BloomFilter> filters = new ConcurrentHashMap<>();
+
+    public BloomFilterClient(StringRedisTemplate stringRedisTemplate, RedisMessageListenerContainer listenerContainer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        //消息格式 name:id
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int i = body.lastIndexOf(':');
+            BloomFilter filter = filters.get(body.substring(0, i));
+            if (filter != null) {
+                filter.put(Long.parseLong(body.substring(i + 1)));
+            }
+        }, new ChannelTopic(RedisConstants.BLOOM_ADD_CHANNEL));
+    }
+
+    public BloomFilter create(String name, long expectedInsertions, double fpp) {
+        BloomFilter filter = new BloomFilter(expectedInsertions, fpp);
+        filters.put(name, filter);
+        return filter;
+    }
+
+    /**
+     * 新增id：写本地过滤器并广播给其他节点
+     */
+    public void add(String name, Long id) {
+        BloomFilter filter = filters.get(name);
+        if (filter == null || id == null) {
+            return;
+        }
+        filter.put(id);
+        stringRedisTemplate.convertAndSend(RedisConstants.BLOOM_ADD_CHANNEL, name + ":" + id);
+    }
+
+    /**
+     * 过滤器未创建时不做拦截
+     */
+    public boolean mightContain(String name, Long id) {
+        BloomFilter filter = filters.get(name);
+        return filter == null || (id != null && filter.mightContain(id));
+    }
+}
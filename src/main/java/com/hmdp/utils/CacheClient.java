@@ -2,68 +2,435 @@ package com.hmdp.utils;
 
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.json.JSONUtil;
-import cn.hutool.json.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 @Slf4j
 @Component
 public class CacheClient {
 
+    /**
+     * 默认连接，只用于发布订阅；缓存数据按key经路由读写
+     */
     private final StringRedisTemplate stringRedisTemplate;
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    private final RedisRouter redisRouter;
+    private final CacheCodec cacheCodec;
+    private final CacheRebuildScheduler rebuildScheduler;
+    private final DistributedLock distributedLock;
+    private final CacheMetrics cacheMetrics;
+    /**
+     * 本地一级缓存，未开启时为null
+     */
+    private final Cache<String, Object> localCache;
+    /**
+     * 本地缓存中代表"数据库不存在"的占位对象
+     */
+    private static final Object NULL_VALUE = new Object();
+    /**
+     * key前缀 -> 布隆过滤器，命中"一定不存在"的id不再访问redis和数据库
+     */
+    private final Map<String, BloomFilter> bloomFilters = new ConcurrentHashMap<>();
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate,
+                       RedisRouter redisRouter,
+                       CacheCodec cacheCodec,
+                       CacheRebuildScheduler rebuildScheduler,
+                       DistributedLock distributedLock,
+                       CacheMetrics cacheMetrics,
+                       RedisMessageListenerContainer listenerContainer,
+                       @Value("${hmdp.cache.local.enabled:false}") boolean localEnabled,
+                       @Value("${hmdp.cache.local.maximum-size:10000}") long maximumSize,
+                       @Value("${hmdp.cache.local.expire-after-write:5s}") Duration expireAfterWrite) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.redisRouter = redisRouter;
+        this.cacheCodec = cacheCodec;
+        this.rebuildScheduler = rebuildScheduler;
+        this.distributedLock = distributedLock;
+        this.cacheMetrics = cacheMetrics;
+        if (localEnabled) {
+            this.localCache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(expireAfterWrite)
+                    .build();
+            //订阅其他节点广播的失效消息
+            listenerContainer.addMessageListener(
+                    (message, pattern) -> localCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(RedisConstants.CACHE_INVALIDATE_CHANNEL));
+        } else {
+            this.localCache = null;
+        }
+        //其他节点重建完成后唤醒本节点等待的请求
+        listenerContainer.addMessageListener((message, pattern) -> {
+            CompletableFuture<Void> notified = rebuildNotifications.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (notified != null) {
+                notified.complete(null);
+            }
+        }, new ChannelTopic(RedisConstants.CACHE_REBUILT_CHANNEL));
     }
 
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value),time,unit);
+        redisRouter.forKey(key).opsForValue().set(key, cacheCodec.encode(value),time,unit);
+        invalidateLocal(key);
     }
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
-        //设置逻辑过期
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        //设置逻辑过期：过期时间放在定长头部，数据紧随其后
+        long expireMillis = System.currentTimeMillis() + unit.toMillis(time);
         //写入redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        redisRouter.forKey(key).opsForValue().set(key, encodeWithExpire(value, expireMillis));
+        invalidateLocal(key);
+    }
+
+    /**
+     * 管道批量写入逻辑过期缓存，过期时间加随机偏移，避免同一批key同时过期
+     */
+    public void setBatchWithLogicalExpire(Map<String, ?> values, Long time, TimeUnit unit) {
+        long ttlMillis = unit.toMillis(time);
+        long now = System.currentTimeMillis();
+        //按所在节点分组，每个节点一次管道
+        redisRouter.groupByNode(values.keySet(), Function.identity()).forEach((template, keys) ->
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    for (String key : keys) {
+                        long jitter = ThreadLocalRandom.current().nextLong(ttlMillis / 5 + 1);
+                        conn.set(key, encodeWithExpire(values.get(key), now + ttlMillis + jitter));
+                    }
+                    return null;
+                }));
+        values.keySet().forEach(this::invalidateLocal);
+    }
+
+    //================= 批量查询 =================
+    /**
+     * 批量版的 {@link #queryWithPassThrough}：一次MGET，未命中的id一次批量查库，结果和空值通过一个管道写回。
+     * @param dbBatchFallback 按id集合批量查库，返回 id -> 数据，不存在的id不在结果中
+     * @return id -> 数据，按ids的顺序，不存在的id不在结果中
+     */
+    public <R,ID> Map<ID, R> queryBatchWithPassThrough(String keyPrefix, Collection<ID> ids, Class<R> type,
+                                                      Function<Collection<ID>, Map<ID, R>> dbBatchFallback,
+                                                      Long time, TimeUnit unit) {
+        Map<ID, Object> found = new HashMap<>(ids.size() * 2);
+        List<ID> missIds = new ArrayList<>();
+        Map<String, ID> keyIds = keyIds(keyPrefix, ids);
+        Map<String, String> values = multiGet(keyPrefix, keyIds, found);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            ID id = keyIds.get(entry.getKey());
+            String data = entry.getValue();
+            if (data == null) {
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.MISS);
+                missIds.add(id);
+                continue;
+            }
+            if (StrUtil.isBlank(data)) {
+                // 命中空值
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.NULL_HIT);
+                putLocal(entry.getKey(), null);
+                found.put(id, NULL_VALUE);
+                continue;
+            }
+            R r = decodeQuietly(entry.getKey(), data, type);
+            if (r == null) {
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.MISS);
+                missIds.add(id);
+                continue;
+            }
+            cacheMetrics.record(keyPrefix, CacheMetrics.Result.HIT);
+            putLocal(entry.getKey(), r);
+            found.put(id, r);
+        }
+        if (!missIds.isEmpty()) {
+            Map<ID, R> loaded = cacheMetrics.load(keyPrefix, () -> dbBatchFallback.apply(missIds));
+            long ttlMillis = unit.toMillis(time);
+            writeBackBatch(keyPrefix, missIds, loaded, value -> cacheCodec.encode(value), ttlMillis);
+            for (ID id : missIds) {
+                R r = loaded.get(id);
+                putLocal(keyPrefix + id, r);
+                found.put(id, r == null ? NULL_VALUE : r);
+            }
+        }
+        return collect(ids, found, type);
+    }
+
+    /**
+     * 批量版的 {@link #queryWithLogicalExpire}：一次MGET，未过期的直接返回，已过期的返回旧值并逐个提交异步重建；
+     * 未命中或无法识别的id一次批量查库，结果按逻辑过期、不存在的按空值通过一个管道写回。
+     * @param dbBatchFallback 按id集合批量查库，返回 id -> 数据，不存在的id不在结果中
+     * @return id -> 数据，按ids的顺序，不存在的id不在结果中
+     */
+    public <R,ID> Map<ID, R> queryBatchWithLogicalExpire(String keyPrefix, Collection<ID> ids, Class<R> type,
+                                                        Function<Collection<ID>, Map<ID, R>> dbBatchFallback,
+                                                        Long time, TimeUnit unit, String lockKeyPrefix) {
+        Map<ID, Object> found = new HashMap<>(ids.size() * 2);
+        List<ID> missIds = new ArrayList<>();
+        Map<String, ID> keyIds = keyIds(keyPrefix, ids);
+        Map<String, String> values = multiGet(keyPrefix, keyIds, found);
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = entry.getKey();
+            ID id = keyIds.get(key);
+            String data = entry.getValue();
+            if (data == null) {
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.MISS);
+                missIds.add(id);
+                continue;
+            }
+            if (StrUtil.isBlank(data)) {
+                // 命中空值
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.NULL_HIT);
+                found.put(id, NULL_VALUE);
+                continue;
+            }
+            long expireMillis = readExpireHeader(data);
+            R r = expireMillis < 0 ? null : decodeQuietly(key, data.substring(EXPIRE_HEADER_LENGTH), type);
+            if (r == null) {
+                // 无法识别的数据，与未命中一起批量重建
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.MISS);
+                missIds.add(id);
+                continue;
+            }
+            found.put(id, r);
+            Runnable rebuild = () -> {
+                String lockKey = lockKeyPrefix + id;
+                if (!distributedLock.tryLock(lockKey)) {
+                    return;
+                }
+                try {
+                    setWithLogicalExpire(key, dbBatchFallback.apply(Collections.singletonList(id)).get(id), time, unit);
+                } finally {
+                    distributedLock.unlock(lockKey);
+                }
+            };
+            rebuildScheduler.track(key, rebuild);
+            if (expireMillis > now) {
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.HIT);
+                putLocal(key, r);
+            } else {
+                // 已过期：返回旧值，异步重建
+                cacheMetrics.record(keyPrefix, CacheMetrics.Result.STALE);
+                rebuildScheduler.submit(key, rebuild);
+            }
+        }
+        if (!missIds.isEmpty()) {
+            Map<ID, R> loaded = cacheMetrics.load(keyPrefix, () -> dbBatchFallback.apply(missIds));
+            long ttlMillis = unit.toMillis(time);
+            writeBackBatch(keyPrefix, missIds, loaded, value -> encodeWithExpire(value,
+                    now + ttlMillis + ThreadLocalRandom.current().nextLong(ttlMillis / 5 + 1)), -1);
+            for (ID id : missIds) {
+                R r = loaded.get(id);
+                found.put(id, r == null ? NULL_VALUE : r);
+            }
+        }
+        return collect(ids, found, type);
+    }
+
+    /**
+     * 先查本地缓存（命中的放入found），其余key按所在节点分组，每个节点一次MGET
+     * @return 未命中本地缓存的 key -> redis中的值（不存在为null）
+     */
+    private <ID> Map<String, String> multiGet(String keyPrefix, Map<String, ID> keyIds, Map<ID, Object> found) {
+        List<String> keys = new ArrayList<>(keyIds.size());
+        keyIds.forEach((key, id) -> {
+            Object local = getLocal(key);
+            if (local != null) {
+                cacheMetrics.record(keyPrefix, local == NULL_VALUE ? CacheMetrics.Result.NULL_HIT : CacheMetrics.Result.LOCAL_HIT);
+                found.put(id, local);
+            } else {
+                keys.add(key);
+            }
+        });
+        Map<String, String> values = new LinkedHashMap<>(keys.size() * 2);
+        redisRouter.groupByNode(keys, Function.identity()).forEach((template, nodeKeys) -> {
+            List<String> nodeValues = template.opsForValue().multiGet(nodeKeys);
+            for (int i = 0; i < nodeKeys.size(); i++) {
+                values.put(nodeKeys.get(i), nodeValues == null ? null : nodeValues.get(i));
+            }
+        });
+        return values;
+    }
+
+    /**
+     * 查库结果写回：存在的按encoder编码，ttlMillis小于0表示不设置过期（逻辑过期）；不存在的写空值
+     */
+    private <R,ID> void writeBackBatch(String keyPrefix, List<ID> ids, Map<ID, R> loaded,
+                                       Function<R, String> encoder, long ttlMillis) {
+        long nullTtlSeconds = TimeUnit.MINUTES.toSeconds(RedisConstants.CACHE_NULL_TTL);
+        redisRouter.groupByNode(ids, id -> keyPrefix + id).forEach((template, nodeIds) ->
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    for (ID id : nodeIds) {
+                        String key = keyPrefix + id;
+                        R r = loaded.get(id);
+                        if (r == null) {
+                            conn.setEx(key, nullTtlSeconds, "");
+                        } else if (ttlMillis < 0) {
+                            conn.set(key, encoder.apply(r));
+                        } else {
+                            conn.pSetEx(key, ttlMillis, encoder.apply(r));
+                        }
+                    }
+                    return null;
+                }));
+    }
+
+    private static <ID> Map<String, ID> keyIds(String keyPrefix, Collection<ID> ids) {
+        Map<String, ID> keyIds = new LinkedHashMap<>(ids.size() * 2);
+        ids.forEach(id -> keyIds.put(keyPrefix + id, id));
+        return keyIds;
+    }
+
+    private static <R,ID> Map<ID, R> collect(Collection<ID> ids, Map<ID, Object> found, Class<R> type) {
+        Map<ID, R> result = new LinkedHashMap<>(ids.size() * 2);
+        for (ID id : ids) {
+            Object value = found.get(id);
+            if (value != null && value != NULL_VALUE) {
+                result.put(id, type.cast(value));
+            }
+        }
+        return result;
+    }
+
+    //================= 逻辑过期值格式 =================
+    /**
+     * 逻辑过期值 = 16位十六进制的过期时间戳(毫秒) + 序列化后的数据，
+     * 判断是否过期只需解析头部，不用反序列化数据
+     */
+    static final int EXPIRE_HEADER_LENGTH = 16;
+
+    private String encodeWithExpire(Object value, long expireMillis) {
+        String hex = Long.toHexString(expireMillis);
+        StringBuilder sb = new StringBuilder(EXPIRE_HEADER_LENGTH + 256);
+        for (int i = hex.length(); i < EXPIRE_HEADER_LENGTH; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).append(cacheCodec.encode(value)).toString();
+    }
+
+    /**
+     * 解析过期时间头部，不是该格式（例如旧版本写入的数据）返回-1
+     */
+    static long readExpireHeader(String data) {
+        if (data.length() < EXPIRE_HEADER_LENGTH) {
+            return -1;
+        }
+        long millis = 0;
+        for (int i = 0; i < EXPIRE_HEADER_LENGTH; i++) {
+            int digit = Character.digit(data.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            millis = (millis << 4) | digit;
+        }
+        return millis;
+    }
+
+    /**
+     * 反序列化失败（数据格式变更等）时返回null，按未命中处理
+     */
+    private <R> R decodeQuietly(String key, String data, Class<R> type) {
+        try {
+            return cacheCodec.decode(data, type);
+        } catch (RuntimeException e) {
+            log.warn("Cache decode failed, key: {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 删除缓存，并通知所有节点清除本地缓存
+     */
+    public void evict(String key) {
+        redisRouter.forKey(key).delete(key);
+        invalidateLocal(key);
+        if (localCache != null) {
+            stringRedisTemplate.convertAndSend(RedisConstants.CACHE_INVALIDATE_CHANNEL, key);
+        }
+    }
+
+    public void registerBloomFilter(String keyPrefix, BloomFilter bloomFilter) {
+        bloomFilters.put(keyPrefix, bloomFilter);
+    }
+
+    private boolean rejectedByBloomFilter(String keyPrefix, Object id) {
+        BloomFilter bloomFilter = bloomFilters.get(keyPrefix);
+        if (bloomFilter != null && id instanceof Number && !bloomFilter.mightContain(((Number) id).longValue())) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.Result.BLOOM_REJECTED);
+            return true;
+        }
+        return false;
+    }
+
+    //================= 本地一级缓存 =================
+    /**
+     * 查本地缓存：未命中返回null，命中空值返回NULL_VALUE
+     */
+    private Object getLocal(String key) {
+        return localCache == null ? null : localCache.getIfPresent(key);
+    }
+
+    private void putLocal(String key, Object value) {
+        if (localCache != null) {
+            localCache.put(key, value == null ? NULL_VALUE : value);
+        }
+    }
+
+    private void invalidateLocal(String key) {
+        if (localCache != null) {
+            localCache.invalidate(key);
+        }
     }
 
     //存空值解决缓存穿透
     public <R,ID> R queryWithPassThrough(String preFixKey, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         {
-            String key = preFixKey + id;
-            //从redis查id
-            String Json = stringRedisTemplate.opsForValue().get(key);
-            //有就返回
-            if(StrUtil.isNotBlank(Json)){
-                return JSONUtil.toBean(Json, type);
-
-            }
-            //命中的是否是null值
-            if (Json != null){
+            //布隆过滤器判断一定不存在，直接返回
+            if (rejectedByBloomFilter(preFixKey, id)) {
                 return null;
             }
+            String key = preFixKey + id;
+            //先查本地缓存，再查redis，有就返回（包括命中空值）
+            Object cached = readCache(key, type, preFixKey);
+            if (cached != null) {
+                return cached == NULL_VALUE ? null : type.cast(cached);
+            }
 
             //没有就查数据库
-            R r = dbFallback.apply(id);
+            R r = cacheMetrics.load(preFixKey, () -> dbFallback.apply(id));
 
             //数据库里没有则报错，对redis中写入空值，防止缓存击穿
             if (r == null){
-                stringRedisTemplate.opsForValue().set(key, "",2,TimeUnit.MINUTES);
+                redisRouter.forKey(key).opsForValue().set(key, "",2,TimeUnit.MINUTES);
+                putLocal(key, null);
                 return null;
 
             }
 
             //有数据存到redis并返回
             this.set(key, r, time, unit);
+            putLocal(key, r);
 
 
             return r;
@@ -81,47 +448,171 @@ public class CacheClient {
             TimeUnit unit,
             String lockKeyPrefix
     ) {
+        if (rejectedByBloomFilter(keyPrefix, id)) {
+            return null;
+        }
+        String key = keyPrefix + id;
+        // 1. 读缓存（本地 + redis）
+        Object cached = readCache(key, type, keyPrefix);
+        if (cached != null) {
+            return cached == NULL_VALUE ? null : type.cast(cached);
+        }
+
+        // 2. 本节点内合并并发请求：同一个key只有一个线程去重建，其余线程等待它的结果
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlightRebuilds.putIfAbsent(key, flight);
+        if (existing != null) {
+            Object shared = awaitFlight(existing);
+            if (shared != null) {
+                return shared == NULL_VALUE ? null : type.cast(shared);
+            }
+            // 等待超时，直接查库兜底
+            return cacheMetrics.load(keyPrefix, () -> dbFallback.apply(id));
+        }
+        try {
+            R r = rebuildWithMutex(keyPrefix, id, type, dbFallback, time, unit, lockKeyPrefix + id);
+            flight.complete(r == null ? NULL_VALUE : r);
+            return r;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightRebuilds.remove(key, flight);
+        }
+    }
+
+    //================= 单飞合并 =================
+    /**
+     * 本节点正在重建的key
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlightRebuilds = new ConcurrentHashMap<>();
+    /**
+     * 等待其他节点重建完成通知的key
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> rebuildNotifications = new ConcurrentHashMap<>();
+    /**
+     * 竞争分布式锁的最大轮数
+     */
+    private static final int MAX_LOCK_ATTEMPTS = 3;
+    /**
+     * 没抢到锁时，等待持锁节点重建完成通知的最长时间
+     */
+    private static final long REBUILD_NOTIFY_WAIT_MILLIS = 200;
+    /**
+     * 本节点其他线程等待重建结果的最长时间
+     */
+    private static final long FLIGHT_WAIT_MILLIS = MAX_LOCK_ATTEMPTS * (REBUILD_NOTIFY_WAIT_MILLIS + 1000);
+
+    /**
+     * 每个节点只有一个线程走到这里：抢到分布式锁则查库重建，否则等待持锁节点的重建通知，不再轮询
+     */
+    private <R,ID> R rebuildWithMutex(String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
+                                      Long time, TimeUnit unit, String lockKey) {
         String key = keyPrefix + id;
-        // 1. 读缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(json)) {
-            return JSONUtil.toBean(json, type);
+        for (int i = 0; i < MAX_LOCK_ATTEMPTS; i++) {
+            if (distributedLock.tryLock(lockKey)) {
+                try {
+                    // 拿到锁后再查一次缓存，可能别的节点刚重建完
+                    Object cached = readCache(key, type, null);
+                    if (cached != null) {
+                        return cached == NULL_VALUE ? null : type.cast(cached);
+                    }
+                    R r = cacheMetrics.load(keyPrefix, () -> dbFallback.apply(id));
+                    if (r == null) {
+                        // 写入空值，短期过期，防穿透
+                        redisRouter.forKey(key).opsForValue().set(key, "", 2, TimeUnit.MINUTES);
+                    } else {
+                        // 写入正常缓存
+                        this.set(key, r, time, unit);
+                    }
+                    putLocal(key, r);
+                    // 通知其他节点上等待的请求
+                    stringRedisTemplate.convertAndSend(RedisConstants.CACHE_REBUILT_CHANNEL, key);
+                    return r;
+                } finally {
+                    distributedLock.unlock(lockKey);
+                }
+            }
+            // 先登记再查缓存，避免在两步之间错过通知
+            CompletableFuture<Void> notified = rebuildNotifications.computeIfAbsent(key, k -> new CompletableFuture<>());
+            Object cached = readCache(key, type, null);
+            if (cached == null) {
+                awaitNotification(notified);
+                cached = readCache(key, type, null);
+            }
+            rebuildNotifications.remove(key, notified);
+            if (cached != null) {
+                return cached == NULL_VALUE ? null : type.cast(cached);
+            }
+        }
+        // 多轮都没等到结果，直接查库兜底，不写缓存
+        log.warn("Cache rebuild wait timeout, fallback to db, key: {}", key);
+        return cacheMetrics.load(keyPrefix, () -> dbFallback.apply(id));
+    }
+
+    /**
+     * 读本地缓存和redis：未命中返回null，命中空值返回NULL_VALUE
+     * @param keyPrefix 用于记录读取结果；重建过程中的再次检查传null，不重复计数
+     */
+    private <R> Object readCache(String key, Class<R> type, String keyPrefix) {
+        Object local = getLocal(key);
+        if (local != null) {
+            recordRead(keyPrefix, local == NULL_VALUE ? CacheMetrics.Result.NULL_HIT : CacheMetrics.Result.LOCAL_HIT);
+            return local;
         }
-        if (json != null) {
+        String data = redisRouter.forKey(key).opsForValue().get(key);
+        if (data == null) {
+            recordRead(keyPrefix, CacheMetrics.Result.MISS);
+            return null;
+        }
+        if (StrUtil.isBlank(data)) {
             // 命中空值
+            recordRead(keyPrefix, CacheMetrics.Result.NULL_HIT);
+            putLocal(key, null);
+            return NULL_VALUE;
+        }
+        R value = decodeQuietly(key, data, type);
+        if (value == null) {
+            recordRead(keyPrefix, CacheMetrics.Result.MISS);
             return null;
         }
+        recordRead(keyPrefix, CacheMetrics.Result.HIT);
+        putLocal(key, value);
+        return value;
+    }
 
-        // 2. 缓存重建（互斥）
-        String lockKey = lockKeyPrefix + id;
+    private void recordRead(String keyPrefix, CacheMetrics.Result result) {
+        if (keyPrefix != null) {
+            cacheMetrics.record(keyPrefix, result);
+        }
+    }
+
+    private Object awaitFlight(CompletableFuture<Object> flight) {
         try {
-            Boolean isLock = tryLock(lockKey);
-            if (!isLock) {
-                // 失败则稍等并递归重试
-                Thread.sleep(50);
-                return queryWithMutexLock(keyPrefix, id, type, dbFallback, time, unit, lockKeyPrefix);
-            }
-            // 获取锁成功，查数据库
-            R r = dbFallback.apply(id);
-            if (r == null) {
-                // 写入空值，短期过期，防穿透
-                stringRedisTemplate.opsForValue().set(key, "", 2, TimeUnit.MINUTES);
-                return null;
-            }
-            // 写入正常缓存
-            this.set(key, r, time, unit);
-            return r;
+            return flight.get(FLIGHT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException(e);
-        } finally {
-            unLock(lockKey);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            return null;
         }
     }
 
-    //================= 逻辑过期击穿封装 =================
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    private void awaitNotification(CompletableFuture<Void> notified) {
+        try {
+            notified.get(REBUILD_NOTIFY_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            // 超时后回到循环重新检查缓存、重新竞争锁
+        }
+    }
 
+    //================= 逻辑过期击穿封装 =================
     public <R,ID> R queryWithLogicalExpire(
             String keyPrefix,
             ID id,
@@ -131,49 +622,122 @@ public class CacheClient {
             TimeUnit unit,
             String lockKeyPrefix
     ) {
+        if (rejectedByBloomFilter(keyPrefix, id)) {
+            return null;
+        }
         String key = keyPrefix + id;
-        String json = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isBlank(json)) {
-            // 未命中缓存
+        String lockKey = lockKeyPrefix + id;
+        // 重建任务：抢到分布式锁的节点才查库写缓存
+        Runnable rebuild = () -> {
+            if (!distributedLock.tryLock(lockKey)) {
+                return;
+            }
+            try {
+                R fresh = dbFallback.apply(id);
+                // 逻辑过期写入
+                setWithLogicalExpire(key, fresh, time, unit);
+            } finally {
+                distributedLock.unlock(lockKey);
+            }
+        };
+        // 记录热点key，快过期时由调度器主动刷新
+        rebuildScheduler.track(key, rebuild);
+        // 本地缓存命中直接返回，本地缓存过期后再回到redis检查逻辑过期
+        Object local = getLocal(key);
+        if (local != null) {
+            cacheMetrics.record(keyPrefix, local == NULL_VALUE ? CacheMetrics.Result.NULL_HIT : CacheMetrics.Result.LOCAL_HIT);
+            return local == NULL_VALUE ? null : type.cast(local);
+        }
+        String data = redisRouter.forKey(key).opsForValue().get(key);
+        if (data == null) {
+            // 未命中（新增的数据、更新时删除的缓存、预热遗漏），加锁查库写入逻辑过期缓存
+            cacheMetrics.record(keyPrefix, CacheMetrics.Result.MISS);
+            return loadWithLogicalExpire(keyPrefix, id, type, dbFallback, time, unit, lockKey);
+        }
+        if (data.isEmpty()) {
+            // 命中空值
+            cacheMetrics.record(keyPrefix, CacheMetrics.Result.NULL_HIT);
+            putLocal(key, null);
             return null;
         }
-        // 命中缓存，先反序列化
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-        LocalDateTime expireTime = redisData.getExpireTime();
+        long expireMillis = readExpireHeader(data);
+        R r = decodeLogical(data, expireMillis, type);
+        if (r == null) {
+            // 无法识别的数据（例如旧版本写入的格式），同步重建一次
+            log.warn("Unreadable logical-expire cache, rebuild, key: {}", key);
+            cacheMetrics.record(keyPrefix, CacheMetrics.Result.MISS);
+            return loadWithLogicalExpire(keyPrefix, id, type, dbFallback, time, unit, lockKey);
+        }
 
         // 1) 未过期则直接返回
-        if (expireTime.isAfter(LocalDateTime.now())) {
+        if (expireMillis > System.currentTimeMillis()) {
+            cacheMetrics.record(keyPrefix, CacheMetrics.Result.HIT);
+            putLocal(key, r);
             return r;
         }
 
-        // 2) 过期则尝试异步重建
-        String lockKey = lockKeyPrefix + id;
-        Boolean isLock = tryLock(lockKey);
-        if (isLock) {
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    R fresh = dbFallback.apply(id);
-                    // 逻辑过期写入
-                    setWithLogicalExpire(keyPrefix + id, fresh, time, unit);
-                } catch (Exception e) {
-                    log.error("Cache rebuild error", e);
-                } finally {
-                    unLock(lockKey);
-                }
-            });
-        }
+        // 2) 过期则提交异步重建，同一key不会重复排队
+        cacheMetrics.record(keyPrefix, CacheMetrics.Result.STALE);
+        rebuildScheduler.submit(key, rebuild);
         // 返回旧值
         return r;
     }
 
-    //================= 简单分布式锁 =================
-    private boolean tryLock(String key) {
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+    /**
+     * 逻辑过期缓存未命中时同步加载：同一key的并发请求在分布式锁上排队（等待期间靠释放通知唤醒），
+     * 拿到锁后先重新读一次，前面的请求已经写好的直接返回，只有第一个请求查库。
+     * 不存在的数据写空值防穿透；等锁超时则直接查库，不写缓存
+     */
+    private <R,ID> R loadWithLogicalExpire(String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
+                                           Long time, TimeUnit unit, String lockKey) {
+        String key = keyPrefix + id;
+        boolean locked;
+        try {
+            locked = distributedLock.tryLock(lockKey, FLIGHT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (!locked) {
+            log.warn("Cache rebuild wait timeout, fallback to db, key: {}", key);
+            return cacheMetrics.load(keyPrefix, () -> dbFallback.apply(id));
+        }
+        try {
+            String data = redisRouter.forKey(key).opsForValue().get(key);
+            if (data != null) {
+                if (data.isEmpty()) {
+                    putLocal(key, null);
+                    return null;
+                }
+                R cached = decodeLogical(data, readExpireHeader(data), type);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            R r = cacheMetrics.load(keyPrefix, () -> dbFallback.apply(id));
+            if (r == null) {
+                redisRouter.forKey(key).opsForValue().set(key, "", RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+                putLocal(key, null);
+            } else {
+                setWithLogicalExpire(key, r, time, unit);
+            }
+            return r;
+        } finally {
+            distributedLock.unlock(lockKey);
+        }
     }
 
-    private void unLock(String key) {
-        stringRedisTemplate.delete(key);
+    /**
+     * 解析逻辑过期格式的数据，格式不对或反序列化失败返回null
+     */
+    private <R> R decodeLogical(String data, long expireMillis, Class<R> type) {
+        if (expireMillis < 0) {
+            return null;
+        }
+        try {
+            return cacheCodec.decode(data.substring(EXPIRE_HEADER_LENGTH), type);
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 }
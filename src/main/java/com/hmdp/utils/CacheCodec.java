@@ -0,0 +1,11 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存值的序列化方式，CacheClient通过它读写redis中的值
+ */
+public interface CacheCodec {
+
+    String encode(Object value);
+
+    <T> T decode(String data, Class<T> type);
+}
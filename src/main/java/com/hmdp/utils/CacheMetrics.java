@@ -0,0 +1,81 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * CacheClient的读取结果和回源耗时，按key前缀打标签（前缀个数有限，不会产生大量时间序列）。
+ * 计数器按前缀懒加载后缓存，每次记录只是一次map查找加一次LongAdder累加
+ */
+@Component
+public class CacheMetrics {
+
+    public enum Result {
+        /**
+         * 本地一级缓存命中
+         */
+        LOCAL_HIT,
+        /**
+         * redis命中
+         */
+        HIT,
+        /**
+         * 命中空值（本地或redis），即数据库中不存在
+         */
+        NULL_HIT,
+        /**
+         * 未命中，需要回源
+         */
+        MISS,
+        /**
+         * 逻辑过期：返回旧值并异步重建
+         */
+        STALE,
+        /**
+         * 被布隆过滤器拦截
+         */
+        BLOOM_REJECTED
+    }
+
+    private static final Result[] RESULTS = Result.values();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter[]> requestCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> loadTimers = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(String keyPrefix, Result result) {
+        requestCounters.computeIfAbsent(keyPrefix, this::newCounters)[result.ordinal()].increment();
+    }
+
+    /**
+     * 同步回源（查库）并计时
+     */
+    public <T> T load(String keyPrefix, Supplier<T> loader) {
+        return loadTimers.computeIfAbsent(keyPrefix, prefix -> Timer.builder("cache.load")
+                .description("缓存未命中时同步回源的耗时")
+                .tag("cache", prefix)
+                .register(meterRegistry)).record(loader);
+    }
+
+    private Counter[] newCounters(String keyPrefix) {
+        Counter[] counters = new Counter[RESULTS.length];
+        for (Result result : RESULTS) {
+            counters[result.ordinal()] = Counter.builder("cache.requests")
+                    .description("缓存读取次数，按结果区分")
+                    .tag("cache", keyPrefix)
+                    .tag("result", result.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        return counters;
+    }
+}
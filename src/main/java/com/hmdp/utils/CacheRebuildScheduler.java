@@ -0,0 +1,171 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 逻辑过期缓存的重建调度：
+ * 1. 过期后的异步重建，同一个key在本节点同时只会排队一次
+ * 2. 主动刷新（refresh-ahead）：定时检查最近被读过的key，快过期时提前重建，读请求看不到旧值
+ */
+@Slf4j
+@Component
+public class CacheRebuildScheduler {
+
+    /**
+     * 每批管道读取过期头部的key数量
+     */
+    private static final int REFRESH_SCAN_BATCH = 500;
+
+    private final ThreadPoolTaskExecutor cacheRebuildExecutor;
+    private final RedisRouter redisRouter;
+    private final long refreshAheadMillis;
+    /**
+     * 已在队列中或正在执行的key
+     */
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    /**
+     * 最近被读过的key及其重建任务，用于主动刷新
+     */
+    private final Cache<String, Runnable> trackedKeys;
+
+    private final Timer rebuildTimer;
+    private final Counter rebuildFailures;
+    private final Counter rebuildRejections;
+    private final Counter refreshAheadCounter;
+
+    public CacheRebuildScheduler(ThreadPoolTaskExecutor cacheRebuildExecutor,
+                                 RedisRouter redisRouter,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${hmdp.cache.rebuild.refresh-ahead:30s}") Duration refreshAhead,
+                                 @Value("${hmdp.cache.rebuild.tracked-keys:10000}") long trackedKeys) {
+        this.cacheRebuildExecutor = cacheRebuildExecutor;
+        this.redisRouter = redisRouter;
+        this.refreshAheadMillis = refreshAhead.toMillis();
+        this.trackedKeys = Caffeine.newBuilder()
+                .maximumSize(trackedKeys)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+
+        Gauge.builder("cache.rebuild.queue.size", cacheRebuildExecutor,
+                        e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("等待执行的缓存重建任务数")
+                .register(meterRegistry);
+        Gauge.builder("cache.rebuild.active", cacheRebuildExecutor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("正在执行的缓存重建任务数")
+                .register(meterRegistry);
+        Gauge.builder("cache.rebuild.tracked.keys", this.trackedKeys, Cache::estimatedSize)
+                .description("主动刷新跟踪的key数量")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("cache.rebuild.latency")
+                .description("缓存重建耗时")
+                .register(meterRegistry);
+        this.rebuildFailures = Counter.builder("cache.rebuild.failures")
+                .tag("reason", "error")
+                .register(meterRegistry);
+        this.rebuildRejections = Counter.builder("cache.rebuild.failures")
+                .tag("reason", "rejected")
+                .register(meterRegistry);
+        this.refreshAheadCounter = Counter.builder("cache.rebuild.refresh.ahead")
+                .description("主动刷新提交的重建次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 提交重建任务，key已在排队或队列已满时返回false
+     */
+    public boolean submit(String key, Runnable rebuild) {
+        if (!pendingKeys.add(key)) {
+            return false;
+        }
+        try {
+            cacheRebuildExecutor.execute(() -> {
+                try {
+                    rebuildTimer.record(rebuild);
+                } catch (Exception e) {
+                    rebuildFailures.increment();
+                    log.error("Cache rebuild error, key: {}", key, e);
+                } finally {
+                    pendingKeys.remove(key);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            pendingKeys.remove(key);
+            rebuildRejections.increment();
+            log.warn("Cache rebuild rejected, queue is full, key: {}", key);
+            return false;
+        }
+    }
+
+    /**
+     * 记录被读取的key，供主动刷新使用
+     */
+    public void track(String key, Runnable rebuild) {
+        trackedKeys.get(key, k -> rebuild);
+    }
+
+    @Scheduled(fixedDelayString = "${hmdp.cache.rebuild.refresh-ahead-interval:5000}")
+    public void refreshAhead() {
+        Map<String, Runnable> snapshot = trackedKeys.asMap();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(snapshot.keySet());
+        long deadline = System.currentTimeMillis() + refreshAheadMillis;
+        for (int from = 0; from < keys.size(); from += REFRESH_SCAN_BATCH) {
+            List<String> keyBatch = keys.subList(from, Math.min(from + REFRESH_SCAN_BATCH, keys.size()));
+            // 按所在节点分组，只读取定长的过期时间头部，不传输也不反序列化数据
+            redisRouter.groupByNode(keyBatch, Function.identity()).forEach((template, batch) -> {
+                List<Object> headers = template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    for (String key : batch) {
+                        conn.getRange(key, 0, CacheClient.EXPIRE_HEADER_LENGTH - 1);
+                    }
+                    return null;
+                });
+                submitExpiring(batch, headers, snapshot, deadline);
+            });
+        }
+    }
+
+    /**
+     * 提交过期时间在deadline之前的key
+     */
+    private void submitExpiring(List<String> batch, List<Object> headers, Map<String, Runnable> snapshot, long deadline) {
+        for (int i = 0; i < batch.size(); i++) {
+            Object header = headers.get(i);
+            if (!(header instanceof String) || ((String) header).isEmpty()) {
+                continue;
+            }
+            long expireMillis = CacheClient.readExpireHeader((String) header);
+            if (expireMillis >= 0 && expireMillis < deadline) {
+                String key = batch.get(i);
+                Runnable rebuild = snapshot.get(key);
+                if (rebuild != null && submit(key, rebuild)) {
+                    refreshAheadCounter.increment();
+                }
+            }
+        }
+    }
+}
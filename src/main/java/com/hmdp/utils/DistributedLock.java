@@ -0,0 +1,225 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASED_CHANNEL;
+
+/**
+ * 基于redis的可重入分布式锁：
+ * 1. 锁是一个hash，field为持有者（节点id:线程id），value为重入次数，加锁/解锁/续期都是lua脚本
+ * 2. 只有持有者能解锁，不会误删别人的锁
+ * 3. 看门狗定时给本节点持有的锁续期，业务执行再久也不会因为租期到了而丢锁；节点宕机则租期到后自动释放
+ * 4. 抢锁失败时订阅释放通知等待，不轮询
+ */
+@Slf4j
+@Component
+public class DistributedLock {
+
+    private static final DefaultRedisScript<Long> LOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+    static {
+        LOCK_SCRIPT = new DefaultRedisScript<>();
+        LOCK_SCRIPT.setLocation(new ClassPathResource("lock.lua"));
+        LOCK_SCRIPT.setResultType(Long.class);
+        UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 节点id，区分不同jvm中id相同的线程
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long leaseMillis;
+    /**
+     * 本节点持有的锁：锁key -> 持有者，由看门狗续期
+     */
+    private final Map<String, String> heldLocks = new ConcurrentHashMap<>();
+    /**
+     * 等待锁释放的key -> 通知，同一key的等待线程共用
+     */
+    private final Map<String, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lock-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Counter acquiredCounter;
+    private final Counter contendedCounter;
+    private final Timer waitTimer;
+
+    public DistributedLock(StringRedisTemplate stringRedisTemplate,
+                           RedisMessageListenerContainer listenerContainer,
+                           MeterRegistry meterRegistry,
+                           @Value("${hmdp.lock.lease-time:30s}") Duration leaseTime) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.leaseMillis = leaseTime.toMillis();
+        this.acquiredCounter = Counter.builder("lock.acquire")
+                .description("加锁尝试次数，contended为锁被其他持有者占用")
+                .tag("result", "acquired")
+                .register(meterRegistry);
+        this.contendedCounter = Counter.builder("lock.acquire")
+                .tag("result", "contended")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("lock.wait")
+                .description("带等待的加锁从开始到拿到锁或放弃的耗时")
+                .register(meterRegistry);
+        //锁释放时唤醒本节点等待该锁的线程
+        listenerContainer.addMessageListener((message, pattern) -> {
+            CompletableFuture<Void> released = waiters.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (released != null) {
+                released.complete(null);
+            }
+        }, new ChannelTopic(LOCK_RELEASED_CHANNEL));
+        //每1/3租期批量续期一次
+        long period = Math.max(leaseMillis / 3, 1);
+        watchdog.scheduleAtFixedRate(this::renewHeldLocks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 尝试加锁，不等待
+     */
+    public boolean tryLock(String key) {
+        return tryAcquire(key, currentOwner()) == null;
+    }
+
+    /**
+     * 尝试加锁，锁被占用时等待释放通知，最多等待waitTime
+     */
+    public boolean tryLock(String key, long waitTime, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return awaitLock(key, currentOwner(), System.currentTimeMillis() + unit.toMillis(waitTime));
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean awaitLock(String key, String owner, long deadline) throws InterruptedException {
+        while (true) {
+            // 先登记再抢锁，避免在两步之间错过释放通知
+            CompletableFuture<Void> released = waiters.computeIfAbsent(key, k -> new CompletableFuture<>());
+            Long ttl = tryAcquire(key, owner);
+            if (ttl == null) {
+                return true;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            // 最多等到锁的租期结束（持有者宕机时不会有释放通知）
+            long wait = ttl > 0 ? Math.min(ttl, remaining) : remaining;
+            try {
+                released.get(wait, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // 超时后重新抢锁
+            }
+        }
+    }
+
+    /**
+     * 解锁，当前线程不是持有者时抛出IllegalMonitorStateException
+     */
+    public void unlock(String key) {
+        String owner = currentOwner();
+        Long result = stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(key),
+                owner, String.valueOf(leaseMillis), LOCK_RELEASED_CHANNEL);
+        if (result == null) {
+            heldLocks.remove(key, owner);
+            throw new IllegalMonitorStateException("锁不属于当前线程, key: " + key + ", owner: " + owner);
+        }
+        if (result == 1) {
+            heldLocks.remove(key, owner);
+        }
+    }
+
+    /**
+     * @return null表示加锁成功，否则为锁的剩余时间(ms)
+     */
+    private Long tryAcquire(String key, String owner) {
+        Long ttl = stringRedisTemplate.execute(LOCK_SCRIPT, Collections.singletonList(key),
+                String.valueOf(leaseMillis), owner);
+        if (ttl == null) {
+            heldLocks.put(key, owner);
+            acquiredCounter.increment();
+        } else {
+            contendedCounter.increment();
+        }
+        return ttl;
+    }
+
+    /**
+     * 管道批量续期本节点持有的所有锁，已经丢失的锁不再续期
+     */
+    private void renewHeldLocks() {
+        if (heldLocks.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, String>> locks = new ArrayList<>(heldLocks.entrySet());
+        byte[] script = RENEW_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        byte[] lease = String.valueOf(leaseMillis).getBytes(StandardCharsets.UTF_8);
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<String, String> lock : locks) {
+                    connection.eval(script, ReturnType.INTEGER, 1,
+                            lock.getKey().getBytes(StandardCharsets.UTF_8),
+                            lock.getValue().getBytes(StandardCharsets.UTF_8),
+                            lease);
+                }
+                return null;
+            });
+            for (int i = 0; i < locks.size(); i++) {
+                if (Long.valueOf(0L).equals(results.get(i))) {
+                    Map.Entry<String, String> lock = locks.get(i);
+                    heldLocks.remove(lock.getKey(), lock.getValue());
+                    log.warn("分布式锁已丢失，停止续期, key: {}", lock.getKey());
+                }
+            }
+        } catch (Exception e) {
+            log.error("分布式锁续期失败", e);
+        }
+    }
+
+    private String currentOwner() {
+        return nodeId + ":" + Thread.currentThread().getId();
+    }
+
+    @PreDestroy
+    private void destroy() {
+        watchdog.shutdownNow();
+    }
+}
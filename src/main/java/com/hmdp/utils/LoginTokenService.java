@@ -0,0 +1,184 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 登录token的签发、校验和登出，按 hmdp.auth.mode 切换两种模式：
+ * <ul>
+ *     <li>redis：随机token，用户信息存放在redis hash中（配合本地缓存 {@link TokenSessionCache}）</li>
+ *     <li>token：HMAC签名的自包含token，本地校验；每次登录是一个会话，续期签发的新token沿用会话id，
+ *     登出时会话id写入redis吊销列表，该会话签发过的所有token一起失效。
+ *     各节点在本地保存吊销列表的副本，通过发布订阅增量同步并定时全量对齐</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class LoginTokenService {
+
+    public static final String MODE_REDIS = "redis";
+    public static final String MODE_TOKEN = "token";
+    /**
+     * 签名token临近过期时，通过该响应头返回续期后的新token
+     */
+    public static final String REFRESH_TOKEN_HEADER = "refresh-token";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisRouter redisRouter;
+    private final TokenSessionCache tokenSessionCache;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final boolean signedMode;
+    private final SignedTokenCodec codec;
+    private final long ttlSeconds = TimeUnit.MINUTES.toSeconds(LOGIN_USER_TTL);
+    /**
+     * 签名token签发超过该时间才续期，同一会话每个间隔最多续期一次
+     */
+    private final long refreshIntervalSeconds;
+    /**
+     * 已吊销的会话id -> 吊销记录的过期时间(epoch秒)，此后该会话的token都已过期
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    public LoginTokenService(StringRedisTemplate stringRedisTemplate,
+                             RedisRouter redisRouter,
+                             TokenSessionCache tokenSessionCache,
+                             RedisMessageListenerContainer listenerContainer,
+                             @Value("${hmdp.auth.mode:redis}") String mode,
+                             @Value("${hmdp.auth.secret:}") String secret,
+                             @Value("${hmdp.auth.refresh-interval:1h}") Duration refreshInterval) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisRouter = redisRouter;
+        this.tokenSessionCache = tokenSessionCache;
+        this.listenerContainer = listenerContainer;
+        this.signedMode = MODE_TOKEN.equalsIgnoreCase(mode);
+        if (signedMode && StrUtil.isBlank(secret)) {
+            throw new IllegalStateException("hmdp.auth.mode=token 时必须配置 hmdp.auth.secret");
+        }
+        this.codec = signedMode ? new SignedTokenCodec(secret) : null;
+        this.refreshIntervalSeconds = Math.max(1, refreshInterval.getSeconds());
+    }
+
+    @PostConstruct
+    private void init() {
+        if (!signedMode) {
+            return;
+        }
+        //消息格式 会话id:过期时间
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int i = body.lastIndexOf(':');
+            revoked.put(body.substring(0, i), Long.parseLong(body.substring(i + 1)));
+        }, new ChannelTopic(LOGIN_REVOKED_CHANNEL));
+        syncRevoked();
+    }
+
+    /**
+     * 为登录用户签发token
+     */
+    public String createToken(UserDTO userDTO) {
+        if (signedMode) {
+            long now = nowSeconds();
+            return codec.encode(userDTO, UUID.fastUUID().toString(true), now, now + ttlSeconds);
+        }
+        //随机生成字符作为token
+        String token = UUID.fastUUID().toString();
+        //把对象转为hash存储
+        Map<String, Object> userMap = BeanUtil.beanToMap(userDTO, new HashMap<>(),
+                CopyOptions.create()
+                        .setIgnoreNullValue(true)
+                        .setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString()));
+        StringRedisTemplate sessionRedis = redisRouter.forKey(LOGIN_USER_KEY + token);
+        sessionRedis.opsForHash().putAll(LOGIN_USER_KEY + token, userMap);
+        //设置token有效期
+        sessionRedis.expire(LOGIN_USER_KEY + token, LOGIN_USER_TTL, TimeUnit.MINUTES);
+        return token;
+    }
+
+    /**
+     * 解析token对应的登录用户，无效返回null；签名token签发超过续期间隔时在响应头中返回同一会话的新token（滑动续期）。
+     * 新token的签发时间取整到续期间隔，同一间隔内用旧token发来的并发请求拿到的是同一个新token
+     */
+    public UserDTO resolve(String token, HttpServletResponse response) {
+        if (!signedMode) {
+            return tokenSessionCache.get(token);
+        }
+        SignedTokenCodec.Claims claims = codec.decode(token);
+        long now = nowSeconds();
+        if (claims == null || claims.getExpireAtSeconds() <= now || revoked.containsKey(claims.getSessionId())) {
+            return null;
+        }
+        if (now - claims.getIssuedAtSeconds() >= refreshIntervalSeconds) {
+            long issuedAt = now - now % refreshIntervalSeconds;
+            response.setHeader(REFRESH_TOKEN_HEADER,
+                    codec.encode(claims.getUser(), claims.getSessionId(), issuedAt, issuedAt + ttlSeconds));
+        }
+        return claims.getUser();
+    }
+
+    /**
+     * 登出：redis模式删除会话，签名模式吊销整个会话。
+     * 会话中最晚签发的token不会晚于现在，所以吊销记录保留一个完整有效期即可
+     */
+    public void logout(String token) {
+        if (!signedMode) {
+            redisRouter.forKey(LOGIN_USER_KEY + token).delete(LOGIN_USER_KEY + token);
+            tokenSessionCache.invalidate(token);
+            return;
+        }
+        SignedTokenCodec.Claims claims = codec.decode(token);
+        //出示的token过期了，同一会话续期后的token仍可能有效，照样吊销
+        if (claims == null) {
+            return;
+        }
+        String sessionId = claims.getSessionId();
+        long revokedUntil = nowSeconds() + ttlSeconds;
+        revoked.put(sessionId, revokedUntil);
+        stringRedisTemplate.opsForZSet().add(LOGIN_REVOKED_KEY, sessionId, revokedUntil);
+        stringRedisTemplate.convertAndSend(LOGIN_REVOKED_CHANNEL, sessionId + ":" + revokedUntil);
+    }
+
+    /**
+     * 清理已过期的吊销记录，并与redis全量对齐，弥补可能丢失的发布订阅消息
+     */
+    @Scheduled(fixedDelayString = "${hmdp.auth.revoked-sync-interval:60000}")
+    public void syncRevoked() {
+        if (!signedMode) {
+            return;
+        }
+        long now = nowSeconds();
+        stringRedisTemplate.opsForZSet().removeRangeByScore(LOGIN_REVOKED_KEY, Double.NEGATIVE_INFINITY, now);
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(LOGIN_REVOKED_KEY, now, Double.POSITIVE_INFINITY);
+        if (tuples != null) {
+            tuples.forEach(t -> revoked.put(t.getValue(), t.getScore().longValue()));
+        }
+        revoked.values().removeIf(expireAt -> expireAt <= now);
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,94 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 不透明的分页游标：base64url("mode:last:offset")，与关注流的 (minTime, offset) 是同一个思路
+ * <p>
+ * last为上一页最后一条的排序值（按id排序的列表即id），排序值会重复的列表offset为最后一条的id，
+ * 用来区分同分的条目。下一页从 (last, offset) 之后接着查，不需要OFFSET跳过前面的行，也不需要COUNT。
+ * GEO列表例外，offset为已返回的条数，见Mode.GEO。
+ * mode标明游标由哪种查询生成，解析时必须与当前查询一致，防止把一种列表的游标拿去翻另一种列表
+ */
+public final class PageCursor {
+
+    public enum Mode {
+        /**
+         * 按id排序：last为id
+         */
+        ID("i"),
+        /**
+         * 按得分排序（热门博文）：last为得分，offset为最后一条的id
+         */
+        SCORE("s"),
+        /**
+         * 按距离排序：offset为已返回的条数，last不使用
+         */
+        GEO("g"),
+        /**
+         * 按相关度排序：last为得分，offset为最后一条的id（同分按id升序）
+         */
+        SEARCH("r");
+
+        private final String tag;
+
+        Mode(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * 第一页（请求未带游标）
+     */
+    public static final PageCursor FIRST = new PageCursor(0, 0);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final long last;
+    private final long offset;
+
+    private PageCursor(long last, long offset) {
+        this.last = last;
+        this.offset = offset;
+    }
+
+    public static String encode(Mode mode, long last, long offset) {
+        return ENCODER.encodeToString((mode.tag + ":" + last + ":" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，空串返回FIRST，格式错误或不是mode生成的游标返回null
+     */
+    public static PageCursor decode(String cursor, Mode mode) {
+        if (StrUtil.isBlank(cursor)) {
+            return FIRST;
+        }
+        try {
+            String[] parts = new String(DECODER.decode(cursor), StandardCharsets.UTF_8).split(":", -1);
+            if (parts.length != 3 || !mode.tag.equals(parts[0])) {
+                return null;
+            }
+            long offset = Long.parseLong(parts[2]);
+            return offset < 0 ? null : new PageCursor(Long.parseLong(parts[1]), offset);
+        } catch (IllegalArgumentException e) {
+            // base64或数字格式错误（NumberFormatException也是IllegalArgumentException）
+            return null;
+        }
+    }
+
+    public boolean isFirst() {
+        return this == FIRST;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,90 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流，由 {@link RateLimitIntercepter} 在进入controller之前检查，可在同一方法上声明多个，
+ * 所有规则原子地一起检查：全部通过才计数，被拒绝的请求不占用任何规则的次数。
+ * <pre>
+ * &#64;RateLimit(key = "sms:ip", type = RateLimit.Type.IP, limit = 5, window = 60)
+ * &#64;RateLimit(key = "sms:phone", type = RateLimit.Type.PARAM, param = "phone", pattern = RegexPatterns.PHONE_REGEX, limit = 1, window = 60)
+ * </pre>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimit.List.class)
+public @interface RateLimit {
+
+    /**
+     * 限流规则名称，作为redis key的一部分
+     */
+    String key();
+
+    /**
+     * 限流维度
+     */
+    Type type() default Type.GLOBAL;
+
+    /**
+     * type为PARAM时，按该请求参数的值限流
+     */
+    String param() default "";
+
+    /**
+     * type为PARAM时，参数值须匹配该正则才按它限流，不匹配的交给业务校验（不创建限流key）；为空不校验
+     */
+    String pattern() default "";
+
+    Algorithm algorithm() default Algorithm.SLIDING_WINDOW;
+
+    /**
+     * 窗口内允许的次数（令牌桶为桶容量）
+     */
+    int limit();
+
+    /**
+     * 窗口长度，单位秒（令牌桶为补满整桶的时间）
+     */
+    long window();
+
+    String message() default "请求过于频繁，请稍后再试";
+
+    enum Type {
+        /**
+         * 所有请求共享
+         */
+        GLOBAL,
+        /**
+         * 按客户端ip
+         */
+        IP,
+        /**
+         * 按请求参数
+         */
+        PARAM
+    }
+
+    enum Algorithm {
+        /**
+         * 滑动窗口：严格限制任意窗口内的次数
+         */
+        SLIDING_WINDOW,
+        /**
+         * 令牌桶：允许突发，长期速率平滑
+         */
+        TOKEN_BUCKET
+    }
+
+    @Documented
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface List {
+        RateLimit[] value();
+    }
+}
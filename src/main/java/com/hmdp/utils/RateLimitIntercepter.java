@@ -0,0 +1,110 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.Result;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static com.hmdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * 检查controller方法上的 {@link RateLimit}，同一方法的所有规则在一次lua脚本中检查，
+ * 全部通过才记账，任意一条不通过即返回429且不扣任何规则的次数
+ */
+public class RateLimitIntercepter implements HandlerInterceptor {
+
+    private static final DefaultRedisScript<Long> RATE_LIMIT_SCRIPT;
+    static {
+        RATE_LIMIT_SCRIPT = new DefaultRedisScript<>();
+        RATE_LIMIT_SCRIPT.setLocation(new ClassPathResource("rate_limit.lua"));
+        RATE_LIMIT_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    /**
+     * 规则上声明的参数校验正则，编译一次
+     */
+    private final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+
+    public RateLimitIntercepter(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        RateLimit[] rules = ((HandlerMethod) handler).getMethod().getAnnotationsByType(RateLimit.class);
+        if (rules.length == 0) {
+            return true;
+        }
+        List<RateLimit> applied = new ArrayList<>(rules.length);
+        List<String> keys = new ArrayList<>(rules.length);
+        List<String> args = new ArrayList<>(2 + rules.length * 3);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(IdUtil.fastSimpleUUID());
+        for (RateLimit rule : rules) {
+            String key = limitKey(rule, request);
+            if (key == null) {
+                continue;
+            }
+            applied.add(rule);
+            keys.add(key);
+            args.add(rule.algorithm() == RateLimit.Algorithm.TOKEN_BUCKET ? "bucket" : "window");
+            args.add(String.valueOf(TimeUnit.SECONDS.toMillis(rule.window())));
+            args.add(String.valueOf(rule.limit()));
+        }
+        if (keys.isEmpty()) {
+            return true;
+        }
+        Long rejected = stringRedisTemplate.execute(RATE_LIMIT_SCRIPT, keys, args.toArray());
+        if (rejected == null || rejected == 0) {
+            return true;
+        }
+        response.setStatus(429);
+        response.setContentType("application/json;charset=UTF-8");
+        String message = applied.get(rejected.intValue() - 1).message();
+        response.getOutputStream().write(JSONUtil.toJsonStr(Result.fail(message)).getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    /**
+     * @return 该规则的限流key，null表示本次请求不按该规则限流
+     */
+    private String limitKey(RateLimit rule, HttpServletRequest request) {
+        String key = RATE_LIMIT_KEY + rule.key();
+        switch (rule.type()) {
+            case IP:
+                return key + ":" + RequestUtils.getClientIp(request);
+            case PARAM:
+                String value = request.getParameter(rule.param());
+                //参数缺失或格式不对时不按该维度限流，交给业务校验，避免为任意取值创建限流key
+                if (StrUtil.isBlank(value)) {
+                    return null;
+                }
+                if (!rule.pattern().isEmpty()
+                        && !patterns.computeIfAbsent(rule.pattern(), Pattern::compile).matcher(value).matches()) {
+                    return null;
+                }
+                return key + ":" + value;
+            default:
+                return key;
+        }
+    }
+}
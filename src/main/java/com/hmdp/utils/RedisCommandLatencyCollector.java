@@ -0,0 +1,51 @@
+package com.hmdp.utils;
+
+import io.lettuce.core.metrics.CommandLatencyCollector;
+import io.lettuce.core.metrics.CommandLatencyId;
+import io.lettuce.core.metrics.CommandMetrics;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把Lettuce每条命令的耗时（从写出到收到完整响应）记到Micrometer，按命令名打标签。
+ * 代替Lettuce自带的LatencyUtils统计和定时事件发布，不在内存里另外保留一份直方图
+ */
+public class RedisCommandLatencyCollector implements CommandLatencyCollector {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public RedisCommandLatencyCollector(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void recordCommandLatency(SocketAddress local, SocketAddress remote, ProtocolKeyword commandType,
+                                     long firstResponseLatency, long completionLatency) {
+        timers.computeIfAbsent(commandType.name(), command -> Timer.builder("redis.command.latency")
+                .description("redis命令耗时")
+                .tag("command", command)
+                .register(meterRegistry)).record(completionLatency, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Map<CommandLatencyId, CommandMetrics> retrieveMetrics() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
@@ -3,21 +3,47 @@ package com.hmdp.utils;
 public class RedisConstants {
     public static final String LOGIN_CODE_KEY = "login:code:";
     public static final Long LOGIN_CODE_TTL = 2L;
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
     public static final Long LOGIN_TOKEN_TTL = 2L;
     public static final String LOGIN_USER_KEY = "login:token:";
     public static final Long LOGIN_USER_TTL = 36000L;
+    public static final String LOGIN_INVALIDATE_CHANNEL = "login:invalidate";
+    public static final String LOGIN_REVOKED_KEY = "login:revoked";
+    public static final String LOGIN_REVOKED_CHANNEL = "login:revoked";
 
     public static final Long CACHE_NULL_TTL = 2L;
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    public static final String CACHE_SHOP_TYPE_KEY = "cache:shop:list";
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public static final String CACHE_REBUILT_CHANNEL = "cache:rebuilt";
+    public static final String BLOOM_ADD_CHANNEL = "bloom:add";
+    public static final String SHOP_INDEX_CHANNEL = "shop:index";
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
+    public static final String LOCK_RELEASED_CHANNEL = "lock:released";
     public static final Long LOCK_SHOP_TTL = 10L;
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_TIME_KEY = "seckill:time:";
+    public static final String SECKILL_ORDER_STREAM = "stream.orders";
+    public static final String SECKILL_ORDER_DEAD_LETTER_STREAM = "stream.orders.dead";
+    public static final String SECKILL_ORDER_GROUP = "g1";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    public static final String BLOG_LIKED_DIRTY_KEY = "blog:dirty:liked";
+    public static final String BLOG_HOT_KEY = "blog:hot";
     public static final String FEED_KEY = "feed:";
+    public static final String FEED_OUTBOX_KEY = "feed:outbox:";
+    public static final String FEED_BIG_V_KEY = "feed:bigv";
+    public static final String FOLLOWS_KEY = "follows:";
+    public static final String FANS_KEY = "fans:";
+    public static final String FOLLOW_LOADED_KEY = "follow:loaded";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
+    public static final String UV_KEY = "uv:";
+    public static final Long UV_TTL = 90L;
+    public static final String SIGN_USERS_KEY = "sign:users:";
+    public static final Long USER_SIGN_TTL = 62L;
 }
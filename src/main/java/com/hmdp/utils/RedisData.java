@@ -1,11 +0,0 @@
-package com.hmdp.utils;
-
-import lombok.Data;
-
-import java.time.LocalDateTime;
-
-@Data
-public class RedisData {
-    private LocalDateTime expireTime;
-    private Object data;//要存进redis的数据（如shop等实体）
-}
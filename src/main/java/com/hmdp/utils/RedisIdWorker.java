@@ -0,0 +1,116 @@
+package com.hmdp.utils;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局唯一、按时间有序的id生成器：符号位(1) + 时间戳(31) + 当日序列号(32)
+ * <p>
+ * 序列号来自每天一个的redis自增key，但不是每个id都INCR一次：
+ * 每次用 INCRBY 预留一个号段到本地，号段内的序列号由本地原子计数器分配，
+ * 只有号段用完或跨天时才访问redis。
+ */
+@Component
+public class RedisIdWorker {
+    /**
+     * 开始时间戳 2022-01-01 00:00:00
+     */
+    private static final long BEGIN_TIMESTAMP = 1640995200L;
+    /**
+     * 序列号的位数
+     */
+    private static final int COUNT_BITS = 32;
+    /**
+     * 每次从redis预留的号段长度
+     */
+    private static final long SEGMENT_SIZE = 10000L;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    public RedisIdWorker(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    public long nextId(String keyPrefix) {
+        Segment segment = segments.get(keyPrefix);
+        while (true) {
+            long nowSecond = System.currentTimeMillis() / 1000;
+            if (segment != null && segment.isSameDay(nowSecond)) {
+                long seq = segment.cursor.getAndIncrement();
+                if (seq < segment.end) {
+                    // 时间戳沿用本地时间计，与按天划分的序列号key保持一致
+                    long timestamp = nowSecond + segment.offsetSeconds - BEGIN_TIMESTAMP;
+                    return timestamp << COUNT_BITS | seq;
+                }
+            }
+            segment = nextSegment(keyPrefix, segment);
+        }
+    }
+
+    /**
+     * 号段用完或跨天时，从redis预留新号段；同一前缀只有一个线程访问redis
+     */
+    private synchronized Segment nextSegment(String keyPrefix, Segment exhausted) {
+        Segment current = segments.get(keyPrefix);
+        if (current != exhausted) {
+            // 其他线程已经换过号段
+            return current;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        Instant now = Instant.now();
+        LocalDate today = now.atZone(zone).toLocalDate();
+        String key = "icr:" + keyPrefix + ":" + today.format(DATE_FORMATTER);
+        Long end = stringRedisTemplate.opsForValue().increment(key, SEGMENT_SIZE);
+        if (end == null) {
+            throw new IllegalStateException("获取id号段失败: " + key);
+        }
+        Segment segment = new Segment(
+                end - SEGMENT_SIZE + 1,
+                end + 1,
+                today.atStartOfDay(zone).toEpochSecond(),
+                today.plusDays(1).atStartOfDay(zone).toEpochSecond(),
+                zone.getRules().getOffset(now).getTotalSeconds()
+        );
+        segments.put(keyPrefix, segment);
+        return segment;
+    }
+
+    private static class Segment {
+        /**
+         * 号段内下一个可分配的序列号
+         */
+        private final AtomicLong cursor;
+        /**
+         * 号段上界（不含）
+         */
+        private final long end;
+        /**
+         * 号段所属日期的起止时间（epoch秒）
+         */
+        private final long dayStart;
+        private final long dayEnd;
+        private final int offsetSeconds;
+
+        private Segment(long start, long end, long dayStart, long dayEnd, int offsetSeconds) {
+            this.cursor = new AtomicLong(start);
+            this.end = end;
+            this.dayStart = dayStart;
+            this.dayEnd = dayEnd;
+            this.offsetSeconds = offsetSeconds;
+        }
+
+        private boolean isSameDay(long epochSecond) {
+            return epochSecond >= dayStart && epochSecond < dayEnd;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.RedisRoutingProperties;
+import io.lettuce.core.resource.ClientResources;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * redis key路由：按key前缀找到逻辑连接池（如 sessions、cache、seckill），
+ * 再在池内的多个节点间按一致性哈希选择节点。每个池有独立的连接池大小，热点池不会占满其他池的连接。
+ * <p>
+ * 没有配置的前缀、没有配置节点的池都使用spring.redis的默认连接，因此不做任何配置时行为与单实例一致。
+ * key中带有 {tag} 时只对tag做哈希（与redis cluster相同），需要在同一节点上执行的多key操作可借此放到一起。
+ */
+@Slf4j
+@Component
+public class RedisRouter {
+
+    private final StringRedisTemplate defaultTemplate;
+    private final ClientResources clientResources;
+    /**
+     * 按前缀长度倒序，保证最长前缀优先
+     */
+    private final List<Map.Entry<String, Ring>> routes = new ArrayList<>();
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+
+    public RedisRouter(StringRedisTemplate stringRedisTemplate, RedisRoutingProperties properties,
+                       ClientResources clientResources) {
+        this.defaultTemplate = stringRedisTemplate;
+        this.clientResources = clientResources;
+        Map<String, Ring> rings = new HashMap<>();
+        properties.getPools().forEach((name, pool) -> {
+            if (pool.getNodes().isEmpty()) {
+                return;
+            }
+            List<StringRedisTemplate> templates = new ArrayList<>();
+            for (String node : pool.getNodes()) {
+                templates.add(createTemplate(node, pool));
+            }
+            rings.put(name, new Ring(pool.getNodes(), templates, properties.getVirtualNodes()));
+            log.info("redis连接池[{}]: {}", name, pool.getNodes());
+        });
+        properties.getRoutes().forEach((prefix, pool) -> {
+            Ring ring = rings.get(pool);
+            if (ring != null) {
+                routes.add(new AbstractMap.SimpleImmutableEntry<>(prefix, ring));
+            }
+        });
+        routes.sort(Comparator.comparingInt((Map.Entry<String, Ring> e) -> e.getKey().length()).reversed());
+    }
+
+    /**
+     * key所在节点的StringRedisTemplate
+     */
+    public StringRedisTemplate forKey(String key) {
+        for (Map.Entry<String, Ring> route : routes) {
+            if (key.startsWith(route.getKey())) {
+                return route.getValue().get(key);
+            }
+        }
+        return defaultTemplate;
+    }
+
+    /**
+     * 把一批key按所在节点分组，用于管道、MGET等批量操作
+     */
+    public <T> Map<StringRedisTemplate, List<T>> groupByNode(Collection<T> items, Function<T, String> keyMapper) {
+        Map<StringRedisTemplate, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(forKey(keyMapper.apply(item)), t -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    private StringRedisTemplate createTemplate(String node, RedisRoutingProperties.Pool pool) {
+        String host = StrUtil.subBefore(node, ":", true);
+        int port = Integer.parseInt(StrUtil.subAfter(node, ":", true));
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(host, port);
+        if (StrUtil.isNotBlank(pool.getPassword())) {
+            server.setPassword(RedisPassword.of(pool.getPassword()));
+        }
+        GenericObjectPoolConfig<?> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(pool.getMaxActive());
+        poolConfig.setMaxIdle(pool.getMaxIdle());
+        poolConfig.setMinIdle(pool.getMinIdle());
+        poolConfig.setMaxWaitMillis(pool.getMaxWait().toMillis());
+        LettucePoolingClientConfiguration client = LettucePoolingClientConfiguration.builder()
+                .poolConfig(poolConfig)
+                .commandTimeout(pool.getTimeout())
+                .clientResources(clientResources)
+                .build();
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(server, client);
+        factory.afterPropertiesSet();
+        factories.add(factory);
+        return new StringRedisTemplate(factory);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        factories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    /**
+     * 一致性哈希环
+     */
+    private static class Ring {
+        private final TreeMap<Long, StringRedisTemplate> ring = new TreeMap<>();
+        /**
+         * 只有一个节点时不用计算哈希
+         */
+        private final StringRedisTemplate single;
+
+        private Ring(List<String> nodes, List<StringRedisTemplate> templates, int virtualNodes) {
+            this.single = templates.size() == 1 ? templates.get(0) : null;
+            for (int i = 0; i < nodes.size(); i++) {
+                for (int v = 0; v < virtualNodes; v++) {
+                    ring.put(hash(nodes.get(i) + "#" + v), templates.get(i));
+                }
+            }
+        }
+
+        private StringRedisTemplate get(String key) {
+            if (single != null) {
+                return single;
+            }
+            Map.Entry<Long, StringRedisTemplate> entry = ring.ceilingEntry(hash(hashTag(key)));
+            return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+        }
+    }
+
+    private static String hashTag(String key) {
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                return key.substring(start + 1, end);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * FNV-1a 64位哈希，再做一次混合让相近的字符串在环上分散
+     */
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -1,21 +1,26 @@
 package com.hmdp.utils;
 
-import cn.hutool.core.bean.BeanUtil;
 import com.hmdp.dto.UserDTO;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 public class RefreshIntercepter implements HandlerInterceptor {
 
-    private StringRedisTemplate stringRedisTemplate;
+    private final LoginTokenService loginTokenService;
+    /**
+     * false：允许匿名访问的接口，没有token或token无效时不拦截，只是取不到登录用户
+     */
+    private final boolean required;
 
-    public RefreshIntercepter(StringRedisTemplate stringRedisTemplate) {
-        this.stringRedisTemplate = stringRedisTemplate;
+    public RefreshIntercepter(LoginTokenService loginTokenService) {
+        this(loginTokenService, true);
+    }
+
+    public RefreshIntercepter(LoginTokenService loginTokenService, boolean required) {
+        this.loginTokenService = loginTokenService;
+        this.required = required;
     }
 
     @Override
@@ -23,25 +28,28 @@ public class RefreshIntercepter implements HandlerInterceptor {
         //从请求头中获取token
         String token = request.getHeader("authorization");
         if (token == null){
-            response.setStatus(401);
-            return false;
+            return reject(response);
         }
-        //从token中获取redis里存储的用户
-        Map<Object,Object> userMap = stringRedisTemplate.opsForHash().entries(RedisConstants.LOGIN_USER_KEY+token);
+        //redis模式先查本地缓存再查redis，签名模式本地验签
+        UserDTO userDTO = loginTokenService.resolve(token, response);
 
-        if(userMap.isEmpty()){
-            response.setStatus(401);//不存在用户 拦截生成错误码401
-            return false;
+        if(userDTO == null){
+            return reject(response);//不存在用户 拦截生成错误码401
         }
-        //把hash数据转换为userDTO对象，用于存储
-        UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap, new UserDTO(), true);
         UserHolder.saveUser(userDTO);
-        stringRedisTemplate.expire(RedisConstants.LOGIN_USER_KEY+token, RedisConstants.LOGIN_USER_TTL, TimeUnit.MINUTES);
 
 
         return true;//放行
     }
 
+    private boolean reject(HttpServletResponse response) {
+        if (!required) {
+            return true;
+        }
+        response.setStatus(401);
+        return false;
+    }
+
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
     //移除用户 防止内存泄漏
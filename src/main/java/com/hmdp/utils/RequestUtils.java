@@ -0,0 +1,15 @@
+package com.hmdp.utils;
+
+import javax.servlet.http.HttpServletRequest;
+
+public class RequestUtils {
+
+    /**
+     * 客户端ip。不直接读取 X-Forwarded-For（客户端可以任意伪造），
+     * 经过反向代理时由Tomcat的RemoteIpValve按 server.tomcat.remoteip.internal-proxies
+     * 只信任来自可信代理的转发头，改写remoteAddr
+     */
+    public static String getClientIp(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,62 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 持有本节点的店铺搜索索引，店铺新增或修改时通过redis发布订阅同步到所有节点。
+ * 发布订阅不保证送达，丢失的更新由 ShopServiceImpl.resyncSearchIndex 定期从数据库补齐
+ */
+@Component
+public class ShopSearchClient {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ShopSearchIndex index = new ShopSearchIndex();
+
+    public ShopSearchClient(StringRedisTemplate stringRedisTemplate, RedisMessageListenerContainer listenerContainer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        //消息格式 {"id":店铺id,"name":名称,"area":商圈}，本节点也会收到自己发的消息，重复写入无影响
+        listenerContainer.addMessageListener((message, pattern) -> {
+            JSONObject json = JSONUtil.parseObj(new String(message.getBody(), StandardCharsets.UTF_8));
+            index.put(json.getLong("id"), json.getStr("name"), json.getStr("area"));
+        }, new ChannelTopic(RedisConstants.SHOP_INDEX_CHANNEL));
+    }
+
+    /**
+     * 启动和定期同步时加载，只写本地索引
+     */
+    public void load(long id, String name, String area) {
+        index.put(id, name, area);
+    }
+
+    /**
+     * 店铺新增或修改：写本地索引并广播给其他节点
+     */
+    public void put(Long id, String name, String area) {
+        if (id == null) {
+            return;
+        }
+        index.put(id, name, area);
+        JSONObject json = new JSONObject(true).set("id", id).set("name", name).set("area", area);
+        stringRedisTemplate.convertAndSend(RedisConstants.SHOP_INDEX_CHANNEL, json.toString());
+    }
+
+    public List<ShopSearchIndex.Hit> search(String keyword, int maxScore, long lastId, int limit) {
+        return index.search(keyword, maxScore, lastId, limit);
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        return index.suggest(prefix, limit);
+    }
+
+    public int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,316 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 店铺名称和商圈的内存倒排索引，代替 name LIKE '%关键字%' 的全表扫描，线程安全
+ * <p>
+ * 分词：统一小写并去掉空白和标点后按相邻两个字（bigram）切分，末字补一个结束符，保证每个字都是某个词条的开头。
+ * 中文没有空格可以分词，二元组不需要词典就能命中任意子串。
+ * 查询：两个字以上取关键字的全部二元组求交集，单字取以它开头的词条求并集，再用原文contains校验去掉误命中。
+ * 耗时只与命中的店铺数有关，与店铺总数无关
+ */
+public class ShopSearchIndex {
+
+    private static final char END = '\0';
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * 相关度从高到低，同分按id升序
+     */
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingInt(Hit::getScore).reversed()
+            .thenComparingLong(Hit::getId);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 词条 -> 包含它的店铺id（升序）；有序便于单字查询按前缀取词条
+     */
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final Map<Long, Doc> docs = new HashMap<>();
+
+    /**
+     * 新增或更新一个店铺，更新时先撤掉旧文本的词条；文本未变时直接返回
+     */
+    public void put(long id, String name, String area) {
+        Doc doc = new Doc(name, normalize(name), normalize(area));
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.put(id, doc);
+            if (old != null) {
+                if (old.sameText(doc)) {
+                    return;
+                }
+                for (String token : tokens(old)) {
+                    Postings ids = postings.get(token);
+                    if (ids != null && ids.remove(id) && ids.size == 0) {
+                        postings.remove(token);
+                    }
+                }
+            }
+            for (String token : tokens(doc)) {
+                postings.computeIfAbsent(token, k -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按相关度返回命中的店铺，游标为上一页最后一条的 (得分, id)，与排序键一致，同分再多也能往后翻
+     * @param maxScore 上一页最后一条的得分，第一页传Integer.MAX_VALUE
+     * @param lastId 上一页最后一条的id，只返回得分低于maxScore、或得分等于maxScore且id更大的店铺；第一页传0
+     * @param limit 最多返回条数
+     */
+    public List<Hit> search(String keyword, int maxScore, long lastId, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        //堆顶是当前最差的一条，只保留前limit条
+        PriorityQueue<Hit> top = new PriorityQueue<>(BEST_FIRST.reversed());
+        lock.readLock().lock();
+        try {
+            for (long id : candidates(query)) {
+                int score = score(docs.get(id), query);
+                if (score == 0 || score > maxScore || (score == maxScore && id <= lastId)) {
+                    continue;
+                }
+                top.offer(new Hit(id, score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(BEST_FIRST);
+        return hits;
+    }
+
+    /**
+     * 自动补全：名称以prefix开头的店铺名，短的在前，去重
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String query = normalize(prefix);
+        if (query.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<Doc> matched = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (long id : candidates(query)) {
+                Doc doc = docs.get(id);
+                if (doc.name.startsWith(query)) {
+                    matched.add(doc);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matched.sort(Comparator.comparingInt((Doc doc) -> doc.name.length()).thenComparing(doc -> doc.name));
+        Set<String> names = new LinkedHashSet<>();
+        for (Doc doc : matched) {
+            if (names.size() == limit) {
+                break;
+            }
+            names.add(doc.displayName);
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * 候选店铺id，调用方持有读锁；结果是超集，需要再校验
+     */
+    private long[] candidates(String query) {
+        if (query.length() == 1) {
+            //单字：以它开头的所有词条求并集
+            List<Postings> lists = new ArrayList<>(postings.subMap(query, query + Character.MAX_VALUE).values());
+            int total = 0;
+            for (Postings ids : lists) {
+                total += ids.size;
+            }
+            long[] union = new long[total];
+            int n = 0;
+            for (Postings ids : lists) {
+                System.arraycopy(ids.ids, 0, union, n, ids.size);
+                n += ids.size;
+            }
+            Arrays.sort(union);
+            int distinct = 0;
+            for (int i = 0; i < n; i++) {
+                if (distinct == 0 || union[distinct - 1] != union[i]) {
+                    union[distinct++] = union[i];
+                }
+            }
+            return Arrays.copyOf(union, distinct);
+        }
+        //多字：关键字的每个二元组都要出现，从最短的倒排表开始求交集
+        List<Postings> lists = new ArrayList<>(query.length() - 1);
+        for (int i = 0; i + 1 < query.length(); i++) {
+            Postings ids = postings.get(query.substring(i, i + 2));
+            if (ids == null) {
+                return EMPTY;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(ids -> ids.size));
+        Postings shortest = lists.get(0);
+        long[] result = new long[shortest.size];
+        int n = 0;
+        outer:
+        for (int i = 0; i < shortest.size; i++) {
+            long id = shortest.ids[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(id)) {
+                    continue outer;
+                }
+            }
+            result[n++] = id;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 名称完全相同 > 名称前缀 > 名称包含，关键字占名称的比例越高越相关；命中商圈额外加分。0表示不匹配
+     */
+    private static int score(Doc doc, String query) {
+        int score = 0;
+        if (doc.name.equals(query)) {
+            score += 100;
+        } else if (doc.name.startsWith(query)) {
+            score += 60;
+        } else if (doc.name.contains(query)) {
+            score += 40;
+        }
+        if (score > 0) {
+            score += 20 * query.length() / doc.name.length();
+        }
+        if (doc.area.equals(query)) {
+            score += 30;
+        } else if (doc.area.contains(query)) {
+            score += 20;
+        }
+        return score;
+    }
+
+    private static Set<String> tokens(Doc doc) {
+        Set<String> tokens = new LinkedHashSet<>();
+        addTokens(doc.name, tokens);
+        addTokens(doc.area, tokens);
+        return tokens;
+    }
+
+    private static void addTokens(String text, Set<String> tokens) {
+        for (int i = 0; i < text.length(); i++) {
+            tokens.add(i + 1 < text.length() ? text.substring(i, i + 2) : text.charAt(i) + String.valueOf(END));
+        }
+    }
+
+    /**
+     * 小写，只保留字母和数字（含汉字），去掉空白和各种括号、间隔号等标点
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class Hit {
+        private final long id;
+        private final int score;
+
+        Hit(long id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    private static class Doc {
+        final String displayName;
+        final String name;
+        final String area;
+
+        Doc(String displayName, String name, String area) {
+            this.displayName = displayName;
+            this.name = name;
+            this.area = area;
+        }
+
+        boolean sameText(Doc other) {
+            return Objects.equals(displayName, other.displayName) && name.equals(other.name) && area.equals(other.area);
+        }
+    }
+
+    /**
+     * 升序的long数组，店铺id基本递增，新增多数是追加
+     */
+    private static class Postings {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                return;
+            }
+            i = -i - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            ids[i] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.UserDTO;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * 自包含的签名token：base64url(payload).base64url(HmacSHA256(payload))
+ * <p>
+ * payload为 {"i":用户id,"n":昵称,"c":头像,"s":会话id,"t":签发时间,"e":过期时间(epoch秒)}，校验只需要本地计算，不访问redis。
+ * 会话id在登录时生成，续期签发的新token沿用，吊销按会话id进行。
+ * base64url解码会忽略末尾多余的位、接受补齐的'='，同一个token可以有多种写法，所以只接受规范编码
+ */
+public class SignedTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Mac不是线程安全的，每个线程一个
+     */
+    private final ThreadLocal<Mac> macs;
+
+    public SignedTokenCodec(String secret) {
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("初始化token签名失败", e);
+            }
+        });
+    }
+
+    public String encode(UserDTO user, String sessionId, long issuedAtSeconds, long expireAtSeconds) {
+        JSONObject payload = new JSONObject(true)
+                .set("i", user.getId())
+                .set("n", user.getNickName())
+                .set("c", user.getIcon())
+                .set("s", sessionId)
+                .set("t", issuedAtSeconds)
+                .set("e", expireAtSeconds);
+        byte[] body = payload.toString().getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(body) + "." + ENCODER.encodeToString(sign(body));
+    }
+
+    /**
+     * 校验签名并解析，格式错误、不是规范编码或签名不匹配返回null；不判断是否过期
+     */
+    public Claims decode(String token) {
+        int i = token.indexOf('.');
+        if (i <= 0 || i == token.length() - 1) {
+            return null;
+        }
+        try {
+            String encodedBody = token.substring(0, i);
+            byte[] body = DECODER.decode(encodedBody);
+            if (!ENCODER.encodeToString(body).equals(encodedBody)) {
+                return null;
+            }
+            //与重新计算的规范签名逐字节比较，常量时间，避免通过耗时推测签名
+            String signature = ENCODER.encodeToString(sign(body));
+            if (!MessageDigest.isEqual(signature.getBytes(StandardCharsets.US_ASCII),
+                    token.substring(i + 1).getBytes(StandardCharsets.US_ASCII))) {
+                return null;
+            }
+            JSONObject payload = JSONUtil.parseObj(new String(body, StandardCharsets.UTF_8));
+            UserDTO user = new UserDTO();
+            user.setId(payload.getLong("i"));
+            user.setNickName(payload.getStr("n"));
+            user.setIcon(payload.getStr("c"));
+            long expireAtSeconds = payload.getLong("e");
+            //没有会话id的旧token以规范签名作为会话id，续期后的新token沿用
+            String sessionId = payload.getStr("s", signature);
+            Long issuedAtSeconds = payload.getLong("t");
+            return new Claims(user, sessionId, issuedAtSeconds == null ? 0 : issuedAtSeconds, expireAtSeconds);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] body) {
+        return macs.get().doFinal(body);
+    }
+
+    public static class Claims {
+        private final UserDTO user;
+        /**
+         * 会话id，登录时生成，续期不变，用于吊销
+         */
+        private final String sessionId;
+        /**
+         * 签发时间，旧token为0
+         */
+        private final long issuedAtSeconds;
+        private final long expireAtSeconds;
+
+        private Claims(UserDTO user, String sessionId, long issuedAtSeconds, long expireAtSeconds) {
+            this.user = user;
+            this.sessionId = sessionId;
+            this.issuedAtSeconds = issuedAtSeconds;
+            this.expireAtSeconds = expireAtSeconds;
+        }
+
+        public UserDTO getUser() {
+            return user;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public long getIssuedAtSeconds() {
+            return issuedAtSeconds;
+        }
+
+        public long getExpireAtSeconds() {
+            return expireAtSeconds;
+        }
+    }
+}
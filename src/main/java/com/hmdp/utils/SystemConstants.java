@@ -5,4 +5,9 @@ public class SystemConstants {
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+
+    public static final String SHOP_BLOOM_FILTER = "shop";
+    public static final String USER_BLOOM_FILTER = "user";
+    public static final int BLOOM_FILTER_INIT_BATCH = 1000;
+    public static final int SEARCH_INDEX_LOAD_BATCH = 1000;
 }
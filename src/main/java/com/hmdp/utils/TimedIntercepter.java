@@ -0,0 +1,57 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 包装一个拦截器，记录其preHandle的耗时，按拦截器类名和放行/拦截打标签
+ */
+public class TimedIntercepter implements HandlerInterceptor {
+
+    private final HandlerInterceptor delegate;
+    private final Timer passTimer;
+    private final Timer rejectTimer;
+
+    public TimedIntercepter(HandlerInterceptor delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        String name = delegate.getClass().getSimpleName();
+        this.passTimer = newTimer(meterRegistry, name, "pass");
+        this.rejectTimer = newTimer(meterRegistry, name, "reject");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        long start = System.nanoTime();
+        boolean pass = false;
+        try {
+            pass = delegate.preHandle(request, response, handler);
+            return pass;
+        } finally {
+            (pass ? passTimer : rejectTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
+        delegate.postHandle(request, response, handler, modelAndView);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        delegate.afterCompletion(request, response, handler, ex);
+    }
+
+    private static Timer newTimer(MeterRegistry meterRegistry, String name, String result) {
+        return Timer.builder("interceptor.latency")
+                .description("拦截器preHandle耗时")
+                .tag("interceptor", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,132 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_INVALIDATE_CHANNEL;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
+
+/**
+ * token -> 登录用户 的本地缓存，避免每个请求都 HGETALL + EXPIRE：
+ * 1. 本地命中直接返回，过期时间很短，登出/修改等通过发布订阅通知所有节点清除
+ * 2. 续期按token限频，同一token在一个间隔内最多续期一次，且由定时任务异步批量EXPIRE
+ */
+@Slf4j
+@Component
+public class TokenSessionCache {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisRouter redisRouter;
+    private final long refreshIntervalMillis;
+    private final Cache<String, Session> sessions;
+    /**
+     * 等待异步续期的token
+     */
+    private final Set<String> pendingRefresh = ConcurrentHashMap.newKeySet();
+
+    public TokenSessionCache(StringRedisTemplate stringRedisTemplate,
+                             RedisRouter redisRouter,
+                             RedisMessageListenerContainer listenerContainer,
+                             @Value("${hmdp.session.local.maximum-size:100000}") long maximumSize,
+                             @Value("${hmdp.session.local.expire-after-write:30s}") Duration expireAfterWrite,
+                             @Value("${hmdp.session.refresh-interval:60s}") Duration refreshInterval) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisRouter = redisRouter;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+        //其他节点登出等操作后清除本地缓存，消息内容为token
+        listenerContainer.addMessageListener(
+                (message, pattern) -> sessions.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(LOGIN_INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 查询token对应的登录用户，不存在返回null
+     */
+    public UserDTO get(String token) {
+        Session session = sessions.getIfPresent(token);
+        if (session == null) {
+            Map<Object, Object> userMap = redisRouter.forKey(LOGIN_USER_KEY + token).opsForHash().entries(LOGIN_USER_KEY + token);
+            if (userMap.isEmpty()) {
+                return null;
+            }
+            //刚从redis读出，视为本次已续期
+            session = new Session(BeanUtil.fillBeanWithMap(userMap, new UserDTO(), true));
+            sessions.put(token, session);
+            pendingRefresh.add(token);
+            return session.user;
+        }
+        long now = System.currentTimeMillis();
+        if (now - session.lastRefreshMillis >= refreshIntervalMillis) {
+            session.lastRefreshMillis = now;
+            pendingRefresh.add(token);
+        }
+        return session.user;
+    }
+
+    /**
+     * 清除token的本地缓存，并通知其他节点
+     */
+    public void invalidate(String token) {
+        sessions.invalidate(token);
+        pendingRefresh.remove(token);
+        stringRedisTemplate.convertAndSend(LOGIN_INVALIDATE_CHANNEL, token);
+    }
+
+    @Scheduled(fixedDelayString = "${hmdp.session.refresh-flush-interval:1000}")
+    public void flushRefresh() {
+        if (pendingRefresh.isEmpty()) {
+            return;
+        }
+        List<String> tokens = new ArrayList<>(pendingRefresh);
+        pendingRefresh.removeAll(tokens);
+        long ttl = TimeUnit.MINUTES.toSeconds(LOGIN_USER_TTL);
+        try {
+            //按所在节点分组，每个节点一次管道
+            redisRouter.groupByNode(tokens, token -> LOGIN_USER_KEY + token).forEach((template, nodeTokens) ->
+                    template.executePipelined((RedisCallback<Object>) connection -> {
+                        StringRedisConnection conn = (StringRedisConnection) connection;
+                        for (String token : nodeTokens) {
+                            conn.expire(LOGIN_USER_KEY + token, ttl);
+                        }
+                        return null;
+                    }));
+        } catch (Exception e) {
+            log.warn("登录token续期失败, 数量: {}", tokens.size(), e);
+        }
+    }
+
+    private static class Session {
+        private final UserDTO user;
+        private volatile long lastRefreshMillis;
+
+        private Session(UserDTO user) {
+            this.user = user;
+            this.lastRefreshMillis = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.UserDTO;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 记录店铺详情和热门博文的UV，只写本地缓冲区，不阻塞请求
+ */
+public class UvIntercepter implements HandlerInterceptor {
+
+    private final UvRecorder uvRecorder;
+
+    public UvIntercepter(UvRecorder uvRecorder) {
+        this.uvRecorder = uvRecorder;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        String entity = resolveEntity(request.getRequestURI().substring(request.getContextPath().length()));
+        if (entity != null) {
+            uvRecorder.record(entity, resolveVisitor(request));
+        }
+        return true;
+    }
+
+    /**
+     * /shop/{id} -> shop:{id}，/blog/hot -> blog:hot
+     */
+    private static String resolveEntity(String path) {
+        if ("/blog/hot".equals(path)) {
+            return "blog:hot";
+        }
+        if (path.startsWith("/shop/")) {
+            String id = path.substring("/shop/".length());
+            if (StrUtil.isNumeric(id)) {
+                return "shop:" + id;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 登录用户按用户id去重（由前面的刷新拦截器解析），未登录按ip去重（只信任可信代理转发的ip）
+     */
+    private static String resolveVisitor(HttpServletRequest request) {
+        UserDTO user = UserHolder.getUser();
+        if (user != null) {
+            return user.getId().toString();
+        }
+        return "ip:" + RequestUtils.getClientIp(request);
+    }
+}
@@ -0,0 +1,110 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.hmdp.utils.RedisConstants.UV_KEY;
+import static com.hmdp.utils.RedisConstants.UV_TTL;
+
+/**
+ * UV统计：每个实体每天一个HyperLogLog  uv:{entity}:{yyyyMMdd}，固定最多12KB。
+ * <p>
+ * 请求线程只把访客写入本地缓冲区（同一批次内自动去重），
+ * 由定时任务整批换出后用管道PFADD写入redis。
+ */
+@Slf4j
+@Component
+public class UvRecorder {
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final StringRedisTemplate stringRedisTemplate;
+    /**
+     * 缓冲区中最多保存的访客记录数，超过后丢弃，避免redis不可用时撑爆内存
+     */
+    private final int maxBuffered;
+    private final AtomicReference<Map<String, Set<String>>> buffer = new AtomicReference<>(new ConcurrentHashMap<>());
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    public UvRecorder(StringRedisTemplate stringRedisTemplate,
+                      @Value("${hmdp.uv.max-buffered:100000}") int maxBuffered) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxBuffered = maxBuffered;
+    }
+
+    /**
+     * 记录一次访问
+     * @param entity 被访问的实体，如 shop:1、blog:hot
+     * @param visitor 访客标识，登录用户为用户id，否则为ip
+     */
+    public void record(String entity, String visitor) {
+        if (buffered.get() >= maxBuffered) {
+            return;
+        }
+        String key = uvKey(entity, LocalDate.now());
+        if (buffer.get().computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(visitor)) {
+            buffered.incrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hmdp.uv.flush-interval:1000}")
+    public void flush() {
+        Map<String, Set<String>> batch = buffer.getAndSet(new ConcurrentHashMap<>());
+        if (batch.isEmpty()) {
+            return;
+        }
+        buffered.set(0);
+        long ttl = TimeUnit.DAYS.toSeconds(UV_TTL);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                batch.forEach((key, visitors) -> {
+                    conn.pfAdd(key, visitors.toArray(new String[0]));
+                    conn.expire(key, ttl);
+                });
+                return null;
+            });
+        } catch (Exception e) {
+            //UV统计允许少量丢失，不重试
+            log.warn("UV写入失败, key数量: {}", batch.size(), e);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        flush();
+    }
+
+    /**
+     * PFCOUNT合并统计 [begin, end] 内的去重访客数
+     */
+    public long count(String entity, LocalDate begin, LocalDate end) {
+        List<String> keys = new ArrayList<>();
+        for (LocalDate day = begin; !day.isAfter(end); day = day.plusDays(1)) {
+            keys.add(uvKey(entity, day));
+        }
+        Long count = stringRedisTemplate.opsForHyperLogLog().size(keys.toArray(new String[0]));
+        return count == null ? 0 : count;
+    }
+
+    private static String uvKey(String entity, LocalDate day) {
+        return UV_KEY + entity + ":" + day.format(DAY_FORMATTER);
+    }
+}
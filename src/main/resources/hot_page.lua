@@ -0,0 +1,34 @@
+-- 热门博文按 (热度, 博文id) 续查下一页，不用OFFSET跳过同分的博文
+-- 排行按热度从高到低，同分按成员字典序从大到小（ZREVRANGE的顺序）
+-- KEYS[1] 热门博文排行key  blog:hot
+-- ARGV[1] 上一页最后一条的热度，第一页为空串
+-- ARGV[2] 上一页最后一条的博文id
+-- ARGV[3] 本次取的条数
+-- 返回 {博文id, 热度, 博文id, 热度, ...}
+
+local count = tonumber(ARGV[3])
+if (ARGV[1] == '') then
+    return redis.call('zrevrange', KEYS[1], 0, count - 1, 'withscores')
+end
+local lastScore = tonumber(ARGV[1])
+local lastMember = ARGV[2]
+local start
+-- 1.上一页最后一条的热度没有变，它的下一名就是起点
+local score = redis.call('zscore', KEYS[1], lastMember)
+if (score and tonumber(score) == lastScore) then
+    start = redis.call('zrevrank', KEYS[1], lastMember) + 1
+else
+    -- 2.热度变了或已删除：同分的博文排名连续，在 [lo, hi) 里二分找第一个排在它后面的成员
+    local lo = redis.call('zcount', KEYS[1], '(' .. ARGV[1], '+inf')
+    local hi = redis.call('zcount', KEYS[1], ARGV[1], '+inf')
+    while (lo < hi) do
+        local mid = math.floor((lo + hi) / 2)
+        if (redis.call('zrevrange', KEYS[1], mid, mid)[1] < lastMember) then
+            hi = mid
+        else
+            lo = mid + 1
+        end
+    end
+    start = lo
+end
+return redis.call('zrevrange', KEYS[1], start, start + count - 1, 'withscores')
@@ -0,0 +1,24 @@
+-- 点赞/取消点赞切换，在redis中原子完成
+-- KEYS[1] 博文点赞用户集合key  blog:liked:{blogId}
+-- KEYS[2] 热门博文排行key  blog:hot
+-- KEYS[3] 待落库的博文id集合key  blog:dirty:liked
+-- ARGV[1] 用户id
+-- ARGV[2] 博文id
+-- ARGV[3] 点赞时间戳
+
+-- 0.不在热门排行中的博文视为不存在（每篇博文发布时都会加入排行），不能凭空创建排行成员和点赞集合
+if (not redis.call('zscore', KEYS[2], ARGV[2])) then
+    return -1
+end
+-- 1.已点赞则取消：移出点赞集合，热度-1
+if (redis.call('zscore', KEYS[1], ARGV[1])) then
+    redis.call('zrem', KEYS[1], ARGV[1])
+    redis.call('zincrby', KEYS[2], -1, ARGV[2])
+    redis.call('sadd', KEYS[3], ARGV[2])
+    return 0
+end
+-- 2.未点赞则点赞：按时间戳加入点赞集合，热度+1
+redis.call('zadd', KEYS[1], ARGV[3], ARGV[1])
+redis.call('zincrby', KEYS[2], 1, ARGV[2])
+redis.call('sadd', KEYS[3], ARGV[2])
+return 1
@@ -0,0 +1,12 @@
+-- 可重入锁加锁：hash中 field为持有者(节点id:线程id)，value为重入次数
+-- KEYS[1] 锁key
+-- ARGV[1] 租期(ms)
+-- ARGV[2] 持有者
+-- 返回 nil:加锁成功 其他:锁的剩余时间(ms)
+
+if (redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[2]) == 1) then
+    redis.call('hincrby', KEYS[1], ARGV[2], 1)
+    redis.call('pexpire', KEYS[1], ARGV[1])
+    return nil
+end
+return redis.call('pttl', KEYS[1])
@@ -0,0 +1,54 @@
+-- 多条限流规则一次检查：全部通过才记账，任意一条拒绝则所有规则都不扣次数
+-- KEYS[i] 第i条规则的限流key
+-- ARGV[1] 当前时间(ms)
+-- ARGV[2] 本次请求的唯一标识（滑动窗口zset的成员）
+-- ARGV[3i], ARGV[3i+1], ARGV[3i+2] 第i条规则的 算法(window|bucket)、窗口长度(ms)、次数或桶容量
+-- 返回 0:放行 i:被第i条规则拒绝
+
+local now = tonumber(ARGV[1])
+local requestId = ARGV[2]
+local tokensOf = {}
+local tsOf = {}
+
+-- 1.逐条检查，只清理过期数据，不记账
+for i = 1, #KEYS do
+    local algorithm = ARGV[3 * i]
+    local window = tonumber(ARGV[3 * i + 1])
+    local limit = tonumber(ARGV[3 * i + 2])
+    if (algorithm == 'bucket') then
+        -- 令牌桶：新桶是满的，老桶按经过的时间补充令牌
+        local bucket = redis.call('hmget', KEYS[i], 'tokens', 'ts')
+        local tokens = tonumber(bucket[1])
+        local ts = tonumber(bucket[2])
+        if (tokens == nil or ts == nil) then
+            tokens = limit
+            ts = now
+        elseif (now > ts) then
+            tokens = math.min(limit, tokens + (now - ts) * limit / window)
+            ts = now
+        end
+        if (tokens < 1) then
+            return i
+        end
+        tokensOf[i] = tokens
+        tsOf[i] = ts
+    else
+        -- 滑动窗口：移除窗口之外的请求，窗口内次数已满则拒绝
+        redis.call('zremrangebyscore', KEYS[i], 0, now - window)
+        if (redis.call('zcard', KEYS[i]) >= limit) then
+            return i
+        end
+    end
+end
+
+-- 2.全部通过，逐条记账，key在窗口结束（桶补满）后自动过期
+for i = 1, #KEYS do
+    local window = tonumber(ARGV[3 * i + 1])
+    if (tokensOf[i] ~= nil) then
+        redis.call('hmset', KEYS[i], 'tokens', tostring(tokensOf[i] - 1), 'ts', tostring(tsOf[i]))
+    else
+        redis.call('zadd', KEYS[i], now, requestId)
+    end
+    redis.call('pexpire', KEYS[i], window)
+end
+return 0
@@ -0,0 +1,11 @@
+-- 看门狗续期：仍是持有者才续期
+-- KEYS[1] 锁key
+-- ARGV[1] 持有者
+-- ARGV[2] 租期(ms)
+-- 返回 1:已续期 0:锁已不属于该持有者
+
+if (redis.call('hexists', KEYS[1], ARGV[1]) == 1) then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
@@ -0,0 +1,39 @@
+-- 秒杀资格判断：活动时间 + 库存校验 + 一人一单，在redis中原子完成，成功后把订单写入消息队列
+-- KEYS[1] 库存key  seckill:stock:{voucherId}
+-- KEYS[2] 已下单用户集合key  seckill:order:{voucherId}
+-- KEYS[3] 订单stream  stream.orders
+-- KEYS[4] 活动时间hash  seckill:time:{voucherId}，字段begin/end为毫秒时间戳
+-- ARGV[1] 用户id
+-- ARGV[2] 优惠券id
+-- ARGV[3] 订单id
+-- ARGV[4] 当前时间（毫秒）
+
+-- 1.判断是否在活动时间内（未预热的券视为库存不足）
+local window = redis.call('hmget', KEYS[4], 'begin', 'end')
+local beginTime = tonumber(window[1])
+local endTime = tonumber(window[2])
+if (beginTime == nil or endTime == nil) then
+    return 1
+end
+local now = tonumber(ARGV[4])
+if (now < beginTime) then
+    return 3
+end
+if (now > endTime) then
+    return 4
+end
+-- 2.判断库存是否充足
+local stock = tonumber(redis.call('get', KEYS[1]))
+if (stock == nil or stock <= 0) then
+    return 1
+end
+-- 3.判断用户是否已经下过单
+if (redis.call('sismember', KEYS[2], ARGV[1]) == 1) then
+    return 2
+end
+-- 4.扣库存，记录下单用户
+redis.call('incrby', KEYS[1], -1)
+redis.call('sadd', KEYS[2], ARGV[1])
+-- 5.发送订单消息，由消费者组异步落库  XADD stream.orders * userId .. voucherId .. id ..
+redis.call('xadd', KEYS[3], '*', 'userId', ARGV[1], 'voucherId', ARGV[2], 'id', ARGV[3])
+return 0
@@ -0,0 +1,18 @@
+-- 可重入锁解锁：只有持有者能解锁，重入次数减到0时删除并通知等待者
+-- KEYS[1] 锁key
+-- ARGV[1] 持有者
+-- ARGV[2] 租期(ms)
+-- ARGV[3] 释放通知的频道
+-- 返回 nil:不是持有者 0:仍被重入持有 1:已释放
+
+if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then
+    return nil
+end
+local counter = redis.call('hincrby', KEYS[1], ARGV[1], -1)
+if (counter > 0) then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 0
+end
+redis.call('del', KEYS[1])
+redis.call('publish', ARGV[3], KEYS[1])
+return 1
@@ -5,12 +5,23 @@ import com.hmdp.service.impl.ShopServiceImpl;
 
 
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.DistributedLock;
+import com.hmdp.utils.RedisIdWorker;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import javax.annotation.Resource;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @SpringBootTest
 public class HmDianPingApplicationTests {
 
@@ -19,6 +30,13 @@ public class HmDianPingApplicationTests {
 
     @Resource
     private CacheClient cacheClient;
+
+    @Resource
+    private RedisIdWorker redisIdWorker;
+
+    @Resource
+    private DistributedLock distributedLock;
+
     @Test
     public void testSaveShop() throws InterruptedException {
         Shop shop = shopService.getById(2L);
@@ -26,6 +44,90 @@ public class HmDianPingApplicationTests {
 
     }
 
+    @Test
+    public void testIdWorker() throws InterruptedException {
+        int threads = 64;
+        int idsPerThread = 20000;
+        long[][] ids = new long[threads][idsPerThread];
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            long[] out = ids[t];
+            es.submit(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < idsPerThread; i++) {
+                    out[i] = redisIdWorker.nextId("bench");
+                }
+                done.countDown();
+            });
+        }
+        ready.await();
+        start.countDown();
+        done.await();
+        es.shutdown();
 
+        long total = (long) threads * idsPerThread;
+        Set<Long> unique = new HashSet<>((int) (total * 2));
+        for (long[] out : ids) {
+            for (long id : out) {
+                unique.add(id);
+            }
+        }
+        assertEquals(total, unique.size());
+    }
+
+    @Test
+    public void testDistributedLock() throws InterruptedException {
+        String key = "lock:test:mutex";
+        // 可重入，且其他线程拿不到
+        assertTrue(distributedLock.tryLock(key));
+        assertTrue(distributedLock.tryLock(key));
+        Thread other = new Thread(() -> assertFalse(distributedLock.tryLock(key)));
+        other.start();
+        other.join();
+        distributedLock.unlock(key);
+        distributedLock.unlock(key);
+
+        // 竞争：每个线程加锁后对普通变量做非原子自增，结果正确说明互斥
+        int threads = 32;
+        int rounds = 200;
+        int[] counter = new int[1];
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            es.submit(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        if (!distributedLock.tryLock(key, 10, TimeUnit.SECONDS)) {
+                            continue;
+                        }
+                        try {
+                            counter[0]++;
+                        } finally {
+                            distributedLock.unlock(key);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        es.shutdown();
+
+        assertEquals(threads * rounds, counter[0]);
+    }
 
 }
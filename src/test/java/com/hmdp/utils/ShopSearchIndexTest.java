@@ -0,0 +1,68 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShopSearchIndexTest {
+
+    @Test
+    public void testSearch() {
+        ShopSearchIndex index = new ShopSearchIndex();
+        index.put(1L, "海底捞火锅(水晶城购物中心店）", "大关");
+        index.put(2L, "幸福里老北京涮锅（丝联店）", "拱宸桥/上塘");
+        index.put(3L, "火锅", "运河上街");
+        index.put(4L, "开乐迪KTV（运河上街店）", "运河上街");
+
+        // 名称完全相同的排在包含关键字的前面，标点不影响匹配
+        List<ShopSearchIndex.Hit> hits = index.search("火锅", Integer.MAX_VALUE, 0, 10);
+        assertEquals(2, hits.size());
+        assertEquals(3L, hits.get(0).getId());
+        assertEquals(1L, hits.get(1).getId());
+        assertEquals(1, index.search("购物中心", Integer.MAX_VALUE, 0, 10).size());
+        assertEquals(2, index.search("运河上街", Integer.MAX_VALUE, 0, 10).size());
+        assertEquals(1, index.search("ktv", Integer.MAX_VALUE, 0, 10).size());
+        // 单字
+        assertEquals(3, index.search("锅", Integer.MAX_VALUE, 0, 10).size());
+
+        // 修改名称后旧词条失效
+        index.put(3L, "烤肉", "运河上街");
+        assertEquals(1, index.search("火锅", Integer.MAX_VALUE, 0, 10).size());
+        assertEquals(1, index.search("烤肉", Integer.MAX_VALUE, 0, 10).size());
+
+        assertEquals(Arrays.asList("开乐迪KTV（运河上街店）"), index.suggest("开乐", 10));
+        assertTrue(index.suggest("北京", 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchPagesThroughTies() {
+        // 同分店铺远多于一页时，按 (得分, id) 翻页每条恰好返回一次
+        ShopSearchIndex index = new ShopSearchIndex();
+        int total = 25000;
+        for (long id = 1; id <= total; id++) {
+            index.put(id, "火锅" + (id % 2 == 0 ? "店" : "馆"), "大关");
+        }
+        Set<Long> seen = new HashSet<>();
+        int maxScore = Integer.MAX_VALUE;
+        long lastId = 0;
+        while (true) {
+            List<ShopSearchIndex.Hit> hits = index.search("火锅", maxScore, lastId, 1000);
+            if (hits.isEmpty()) {
+                break;
+            }
+            for (ShopSearchIndex.Hit hit : hits) {
+                assertTrue(seen.add(hit.getId()));
+            }
+            ShopSearchIndex.Hit last = hits.get(hits.size() - 1);
+            maxScore = last.getScore();
+            lastId = last.getId();
+        }
+        assertEquals(total, seen.size());
+    }
+}